@@ -0,0 +1,64 @@
+package com.google.sps.benchmarks;
+
+import com.google.sps.servlets.AuthServlet;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Login checks through {@code AuthServlet.doGet} by a logged-in user: on a new session every
+ * time ("new"), on a session that already has the login info ("session"), and with the
+ * browser's ETag as well ("etag").
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dportfolio.store=memory")
+@State(Scope.Thread)
+public class AuthServletBenchmark {
+
+  @Param({"new", "session", "etag"})
+  String visit;
+
+  private AuthServlet servlet;
+  private FakeSession session;
+  private String etag;
+
+  @Setup
+  public void setUp() throws IOException {
+    Fixtures.useFakes();
+    FakeUserService.loginAs(Fixtures.author(1));
+    servlet = new AuthServlet();
+
+    // a first visit fills the session and yields the ETag
+    session = new FakeSession();
+    FakeResponse first = new FakeResponse();
+    servlet.doGet(new FakeRequest().session(session), first);
+    etag = first.getHeader("ETag");
+  }
+
+  @Benchmark
+  public long doGet() throws IOException {
+    FakeRequest request = new FakeRequest();
+    if(!visit.equals("new")) {
+      request.session(session);
+    }
+    if(visit.equals("etag")) {
+      request.header("If-None-Match", etag);
+    }
+    FakeResponse response = new FakeResponse();
+    servlet.doGet(request, response);
+    return response.written();
+  }
+}
@@ -0,0 +1,63 @@
+package com.google.sps.benchmarks;
+
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.ProfilerFactory;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, always adding the GC profiler so every
+ * result reports allocation per operation ("gc.alloc.rate.norm") next to its throughput and
+ * latency percentiles.
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+    // Disallow instances.
+  }
+
+  public static void main(String[] args) 
+      throws CommandLineOptionException, IOException, RunnerException 
+  {
+    CommandLineOptions options = new CommandLineOptions(args);
+    if(options.shouldHelp()) {
+      options.showHelp();
+      return;
+    }
+    if(options.shouldListProfilers()) {
+      ProfilerFactory.listProfilers(System.out);
+      return;
+    }
+
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(options);
+    // adding the profiler a second time would make every benchmark fail
+    if(!requestsGcProfiler(options)) {
+      builder.addProfiler(GCProfiler.class);
+    }
+    Runner runner = new Runner(builder.build());
+    if(options.shouldList()) {
+      runner.list();
+    } else if (options.shouldListWithParams()) {
+      runner.listWithParams(options);
+    } else {
+      runner.run();
+    }
+  }
+
+  /** Returns whether the command line already asks for the GC profiler, e.g. with "-prof gc". */
+  private static boolean requestsGcProfiler(CommandLineOptions options) {
+    for(ProfilerConfig profiler: options.getProfilers()) {
+      String name = profiler.getKlass();
+      if(name.equals("gc") || name.equals(GCProfiler.class.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,71 @@
+package com.google.sps.benchmarks;
+
+import com.google.sps.data.CommentCache;
+import com.google.sps.servlets.DataServlet;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comment listing through {@code DataServlet.doGet}, over stores of several sizes, with and
+ * without the author filter, served from the listing cache ("warm") or the store ("cold").
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dportfolio.store=memory")
+@State(Scope.Benchmark)
+public class DataServletGetBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  int comments;
+
+  @Param({"10", "100"})
+  int limit;
+
+  // an author's email username, or empty for no filter
+  @Param({"", "user7"})
+  String auth;
+
+  @Param({"warm", "cold"})
+  String cache;
+
+  private DataServlet servlet;
+  private FakeRequest request;
+
+  @Setup
+  public void setUp() {
+    Fixtures.useFakes();
+    Fixtures.seedComments(comments);
+    FakeUserService.loginAs(null);
+    servlet = new DataServlet();
+    request = new FakeRequest()
+        .param("limit", String.valueOf(limit))
+        .param("sort", "descending")
+        .param("sortBy", "timestamp");
+    if(!auth.isEmpty()) {
+      request.param("auth", auth);
+    }
+  }
+
+  @Benchmark
+  public long doGet() throws IOException {
+    if(cache.equals("cold")) {
+      CommentCache.getInstance().invalidateAll();
+    }
+    FakeResponse response = new FakeResponse();
+    servlet.doGet(request, response);
+    return response.written();
+  }
+}
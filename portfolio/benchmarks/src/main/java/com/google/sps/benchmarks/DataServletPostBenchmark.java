@@ -0,0 +1,48 @@
+package com.google.sps.benchmarks;
+
+import com.google.sps.servlets.DataServlet;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comment submission through {@code DataServlet.doPost} by a logged-in user. The store is reset
+ * every iteration so it doesn't grow without bound.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dportfolio.store=memory")
+@State(Scope.Benchmark)
+public class DataServletPostBenchmark {
+
+  private DataServlet servlet;
+  private FakeRequest request;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    Fixtures.useFakes();
+    FakeUserService.loginAs(Fixtures.author(1));
+    servlet = new DataServlet();
+    request = new FakeRequest()
+        .param("enter-text", "A new comment posted from the benchmark.");
+  }
+
+  @Benchmark
+  public int doPost() throws IOException {
+    FakeResponse response = new FakeResponse();
+    servlet.doPost(request, response);
+    return response.getStatus();
+  }
+}
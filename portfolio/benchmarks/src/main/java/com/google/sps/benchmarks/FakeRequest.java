@@ -0,0 +1,87 @@
+package com.google.sps.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpSession;
+
+/**
+ * An in-memory request holding just what the servlets read: parameters, headers, a body and a
+ * session. Anything else throws, so a servlet reaching for more shows up at once.
+ */
+final class FakeRequest extends HttpServletRequestWrapper {
+
+  private static final HttpServletRequest UNSUPPORTED = (HttpServletRequest) Proxy.newProxyInstance(
+      HttpServletRequest.class.getClassLoader(),
+      new Class<?>[] {HttpServletRequest.class},
+      (proxy, method, args) -> {
+        throw new UnsupportedOperationException(method.getName());
+      });
+
+  private final Map<String, String[]> parameters = new HashMap<>();
+  private final Map<String, String> headers = new HashMap<>();
+  private String body = "";
+  private FakeSession session;
+
+  FakeRequest() {
+    super(UNSUPPORTED);
+  }
+
+  FakeRequest param(String name, String... values) {
+    parameters.put(name, values);
+    return this;
+  }
+
+  FakeRequest header(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  FakeRequest body(String body) {
+    this.body = body;
+    return this;
+  }
+
+  FakeRequest session(FakeSession session) {
+    this.session = session;
+    return this;
+  }
+
+  @Override
+  public String getParameter(String name) {
+    String[] values = parameters.get(name);
+    return (values == null) ? null : values[0];
+  }
+
+  @Override
+  public String[] getParameterValues(String name) {
+    return parameters.get(name);
+  }
+
+  @Override
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  @Override
+  public BufferedReader getReader() {
+    return new BufferedReader(new StringReader(body));
+  }
+
+  @Override
+  public HttpSession getSession() {
+    return getSession(true);
+  }
+
+  @Override
+  public HttpSession getSession(boolean create) {
+    if(session == null && create) {
+      session = new FakeSession();
+    }
+    return session;
+  }
+}
@@ -0,0 +1,106 @@
+package com.google.sps.benchmarks;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * An in-memory response that counts the characters written instead of keeping them, so
+ * benchmarks measure the servlet rather than a growing buffer. Status and headers are kept so
+ * a benchmark can replay them, e.g. an ETag.
+ */
+final class FakeResponse extends HttpServletResponseWrapper {
+
+  private static final HttpServletResponse UNSUPPORTED = 
+      (HttpServletResponse) Proxy.newProxyInstance(
+          HttpServletResponse.class.getClassLoader(),
+          new Class<?>[] {HttpServletResponse.class},
+          (proxy, method, args) -> {
+            throw new UnsupportedOperationException(method.getName());
+          });
+
+  private final CountingWriter body = new CountingWriter();
+  private final PrintWriter writer = new PrintWriter(body);
+  private final Map<String, String> headers = new HashMap<>();
+  private int status = SC_OK;
+
+  FakeResponse() {
+    super(UNSUPPORTED);
+  }
+
+  /** Returns how many characters were written to the body. */
+  long written() {
+    writer.flush();
+    return body.count;
+  }
+
+  @Override
+  public PrintWriter getWriter() {
+    return writer;
+  }
+
+  @Override
+  public void setContentType(String type) {}
+
+  @Override
+  public void setCharacterEncoding(String charset) {}
+
+  @Override
+  public void setHeader(String name, String value) {
+    headers.put(name, value);
+  }
+
+  @Override
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  @Override
+  public void setStatus(int status) {
+    this.status = status;
+  }
+
+  @Override
+  public int getStatus() {
+    return status;
+  }
+
+  @Override
+  public void sendError(int status) {
+    this.status = status;
+  }
+
+  @Override
+  public void sendError(int status, String message) {
+    this.status = status;
+  }
+
+  @Override
+  public void sendRedirect(String location) {
+    this.status = SC_FOUND;
+  }
+
+  private static final class CountingWriter extends Writer {
+    long count = 0;
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      count += length;
+    }
+
+    @Override
+    public void write(String text, int offset, int length) {
+      count += length;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,99 @@
+package com.google.sps.benchmarks;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+
+/** A session that keeps its attributes in a map and never expires. */
+@SuppressWarnings("deprecation")
+final class FakeSession implements HttpSession {
+
+  private final Map<String, Object> attributes = new HashMap<>();
+  private final long created = System.currentTimeMillis();
+
+  @Override
+  public long getCreationTime() {
+    return created;
+  }
+
+  @Override
+  public String getId() {
+    return Integer.toHexString(System.identityHashCode(this));
+  }
+
+  @Override
+  public long getLastAccessedTime() {
+    return created;
+  }
+
+  @Override
+  public ServletContext getServletContext() {
+    throw new UnsupportedOperationException("getServletContext");
+  }
+
+  @Override
+  public void setMaxInactiveInterval(int interval) {}
+
+  @Override
+  public int getMaxInactiveInterval() {
+    return -1;
+  }
+
+  @Override
+  public javax.servlet.http.HttpSessionContext getSessionContext() {
+    throw new UnsupportedOperationException("getSessionContext");
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    return attributes.get(name);
+  }
+
+  @Override
+  public Object getValue(String name) {
+    return getAttribute(name);
+  }
+
+  @Override
+  public Enumeration<String> getAttributeNames() {
+    return Collections.enumeration(attributes.keySet());
+  }
+
+  @Override
+  public String[] getValueNames() {
+    return attributes.keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public void setAttribute(String name, Object value) {
+    attributes.put(name, value);
+  }
+
+  @Override
+  public void putValue(String name, Object value) {
+    setAttribute(name, value);
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    attributes.remove(name);
+  }
+
+  @Override
+  public void removeValue(String name) {
+    removeAttribute(name);
+  }
+
+  @Override
+  public void invalidate() {
+    attributes.clear();
+  }
+
+  @Override
+  public boolean isNew() {
+    return false;
+  }
+}
@@ -0,0 +1,28 @@
+package com.google.sps.benchmarks;
+
+import com.google.sps.data.TranslationBackend;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A translation backend that answers instantly without calling the Translate API. */
+final class FakeTranslationBackend implements TranslationBackend {
+
+  @Override
+  public String translate(String text, String targetLanguage) {
+    return "[" + targetLanguage + "] " + text;
+  }
+
+  @Override
+  public List<String> translate(List<String> texts, String targetLanguage) {
+    List<String> translated = new ArrayList<>();
+    for(String text: texts) {
+      translated.add(translate(text, targetLanguage));
+    }
+    return translated;
+  }
+
+  @Override
+  public String detect(String text) {
+    return "en";
+  }
+}
@@ -0,0 +1,61 @@
+package com.google.sps.benchmarks;
+
+import com.google.appengine.api.users.User;
+import com.google.appengine.api.users.UserService;
+import java.util.Set;
+
+/**
+ * A user service whose current user is set per thread with {@link #loginAs}, so benchmark
+ * threads can act as different users.
+ */
+final class FakeUserService implements UserService {
+
+  private static final ThreadLocal<User> CURRENT = new ThreadLocal<>();
+
+  /** Logs the calling thread in as {@code email}, or out if it is null. */
+  static void loginAs(String email) {
+    CURRENT.set((email == null) ? null : new User(email, "example.com"));
+  }
+
+  @Override
+  public String createLoginURL(String destination) {
+    return "/_ah/login?continue=" + destination;
+  }
+
+  @Override
+  public String createLoginURL(String destination, String authDomain) {
+    return createLoginURL(destination);
+  }
+
+  @Override
+  public String createLoginURL(
+      String destination, String authDomain, String federatedIdentity, Set<String> attributes) 
+  {
+    return createLoginURL(destination);
+  }
+
+  @Override
+  public String createLogoutURL(String destination) {
+    return "/_ah/logout?continue=" + destination;
+  }
+
+  @Override
+  public String createLogoutURL(String destination, String authDomain) {
+    return createLogoutURL(destination);
+  }
+
+  @Override
+  public boolean isUserLoggedIn() {
+    return CURRENT.get() != null;
+  }
+
+  @Override
+  public boolean isUserAdmin() {
+    return false;
+  }
+
+  @Override
+  public User getCurrentUser() {
+    return CURRENT.get();
+  }
+}
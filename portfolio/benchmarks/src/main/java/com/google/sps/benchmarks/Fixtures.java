@@ -0,0 +1,43 @@
+package com.google.sps.benchmarks;
+
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentStore;
+import com.google.sps.data.Stores;
+import com.google.sps.data.TranslationClient;
+import com.google.sps.data.UserServices;
+
+/** Shared setup: in-memory stores, fake users and translations, and seeded comments. */
+final class Fixtures {
+
+  /** How many distinct authors seeded comments are spread over. */
+  static final int AUTHORS = 50;
+
+  private Fixtures() {
+    // Disallow instances.
+  }
+
+  /** Points the servlets at fresh in-memory stores and fake App Engine services. */
+  static void useFakes() {
+    Stores.useInMemory();
+    UserServices.set(new FakeUserService());
+    TranslationClient.getInstance().setBackend(new FakeTranslationBackend());
+    CommentCache.getInstance().invalidateAll();
+  }
+
+  /** Returns the email of the i-th seeded author. */
+  static String author(int i) {
+    return "user" + (i % AUTHORS) + "@example.com";
+  }
+
+  /** Adds {@code count} comments spread round-robin over {@link #AUTHORS} authors. */
+  static void seedComments(int count) {
+    CommentStore store = Stores.comments();
+    for(int i = 0; i < count; i++) {
+      store.add(
+          "Comment number " + i + ", which says something mildly interesting about the page.",
+          author(i),
+          "User " + (i % AUTHORS));
+    }
+    CommentCache.getInstance().invalidateAll();
+  }
+}
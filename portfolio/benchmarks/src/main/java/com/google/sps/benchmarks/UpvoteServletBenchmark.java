@@ -0,0 +1,68 @@
+package com.google.sps.benchmarks;
+
+import com.google.sps.servlets.UpvoteServlet;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single votes through {@code UpvoteServlet.doGet}, each benchmark thread voting as its own user
+ * on random comments. Run with -t to measure contention.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dportfolio.store=memory")
+public class UpvoteServletBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Comments {
+    @Param({"1000"})
+    int comments;
+
+    final UpvoteServlet servlet = new UpvoteServlet();
+    final AtomicInteger voters = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+      Fixtures.useFakes();
+      Fixtures.seedComments(comments);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Voter {
+    String email;
+
+    @Setup
+    public void setUp(Comments comments) {
+      email = "voter" + comments.voters.getAndIncrement() + "@example.com";
+    }
+  }
+
+  @Benchmark
+  public long doGet(Comments comments, Voter voter) throws IOException {
+    FakeUserService.loginAs(voter.email);
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    // seeded comment ids run from 1 to the number of comments
+    FakeRequest request = new FakeRequest()
+        .param("id", String.valueOf(1 + random.nextInt(comments.comments)))
+        .param("vote", random.nextBoolean() ? "1" : "-1");
+    FakeResponse response = new FakeResponse();
+    comments.servlet.doGet(request, response);
+    return response.written();
+  }
+}
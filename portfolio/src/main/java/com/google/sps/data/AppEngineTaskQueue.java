@@ -0,0 +1,42 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+
+import java.util.Map;
+
+/** A {@link TaskQueue} backed by App Engine push queues. */
+public final class AppEngineTaskQueue implements TaskQueue {
+
+  @Override
+  public void add(String queueName, String url, Map<String, String> params) {
+    queue(queueName).add(task(url, params));
+  }
+
+  @Override
+  public boolean addOnce(
+      String queueName, String taskName, long delayMillis, String url, Map<String, String> params)
+  {
+    try {
+      queue(queueName).add(task(url, params).taskName(taskName).countdownMillis(delayMillis));
+      return true;
+    } catch (TaskAlreadyExistsException e) {
+      return false;
+    }
+  }
+
+  private static Queue queue(String queueName) {
+    return DEFAULT_QUEUE.equals(queueName)
+        ? QueueFactory.getDefaultQueue() : QueueFactory.getQueue(queueName);
+  }
+
+  private static TaskOptions task(String url, Map<String, String> params) {
+    TaskOptions task = TaskOptions.Builder.withUrl(url);
+    for(Map.Entry<String, String> param: params.entrySet()) {
+      task.param(param.getKey(), param.getValue());
+    }
+    return task;
+  }
+}
@@ -0,0 +1,128 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+/**
+ * Adds the {@link CommentAuthors#TOKENS_PROPERTY} to comments written before it existed, so the
+ * datastore can filter them by author. A run stops at a deadline and returns a cursor to resume
+ * from. Once a run reaches the end, a "MigrationJob" entity records that every comment has its
+ * tokens; until then, author filters are applied in Java instead.
+ */
+public final class AuthorTokenBackfill {
+
+  private static final String JOB_KIND = "MigrationJob";
+  private static final String JOB_NAME = "author-tokens";
+  // a cross-group transaction can span at most 25 entity groups
+  private static final int BATCH_SIZE = 25;
+  private static final int MAX_RETRIES = 3;
+
+  // set once a finished run has been seen, since it never becomes unfinished again
+  private static volatile boolean done = false;
+
+  private AuthorTokenBackfill() {
+    // Disallow instances.
+  }
+
+  /** Returns whether every comment has author tokens, so filtered queries can rely on them. */
+  public static boolean isDone(DatastoreService datastore) {
+    if(!done) {
+      try {
+        Entity job = datastore.get(KeyFactory.createKey(JOB_KIND, JOB_NAME));
+        done = Boolean.TRUE.equals(job.getProperty("done"));
+      } catch (EntityNotFoundException e) {
+        return false;
+      }
+    }
+    return done;
+  }
+
+  /**
+   * Adds tokens to comments missing them until all are done or the deadline passes.
+   * @param datastore The datastore holding the comments.
+   * @param cursor    The cursor to resume from, or null to start from the beginning.
+   * @param deadline  The time in milliseconds after which no new batches are started.
+   * @return          The cursor to resume from, or null if every comment has its tokens.
+   */
+  public static String run(DatastoreService datastore, String cursor, long deadline) {
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(BATCH_SIZE);
+    if(cursor != null) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+    QueryResultIterator<Entity> itr =
+        datastore.prepare(new Query("Comment")).asQueryResultIterator(fetchOptions);
+
+    List<Key> batch = new ArrayList<>();
+    while(itr.hasNext()) {
+      Entity comment = itr.next();
+      if(!comment.hasProperty(CommentAuthors.TOKENS_PROPERTY)) {
+        batch.add(comment.getKey());
+      }
+      if(batch.size() == BATCH_SIZE || (!itr.hasNext() && !batch.isEmpty())) {
+        addTokens(datastore, batch);
+        batch = new ArrayList<>();
+        if(System.currentTimeMillis() > deadline && itr.hasNext()) {
+          return itr.getCursor().toWebSafeString();
+        }
+      }
+    }
+
+    Entity job = new Entity(JOB_KIND, JOB_NAME);
+    job.setUnindexedProperty("done", true);
+    job.setUnindexedProperty("updated", System.currentTimeMillis());
+    datastore.put(job);
+    done = true;
+    return null;
+  }
+
+  /**
+   * Adds tokens to a batch of comments in one transaction, so a rename or vote sync landing at
+   * the same time is never overwritten with a stale copy.
+   */
+  private static void addTokens(DatastoreService datastore, List<Key> keys) {
+    for(int attempt = 0; ; attempt ++) {
+      Transaction txn = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        List<Entity> puts = new ArrayList<>();
+        for(Entity comment: datastore.get(txn, keys).values()) {
+          if(!comment.hasProperty(CommentAuthors.TOKENS_PROPERTY)) {
+            comment.setProperty(CommentAuthors.TOKENS_PROPERTY, CommentAuthors.tokens(
+                stringProperty(comment, "name"), stringProperty(comment, "author")));
+            puts.add(comment);
+          }
+        }
+        if(!puts.isEmpty()) {
+          datastore.put(txn, puts);
+        }
+        txn.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if(attempt >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if(txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+  }
+
+  private static String stringProperty(Entity entity, String name) {
+    Object value = entity.getProperty(name);
+    return (value == null) ? "" : value.toString();
+  }
+}
@@ -0,0 +1,179 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultIterator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Deletes every comment along with its votes and counter shards. Keys are read with keys-only
+ * queries and deleted in batches, with several batches in flight at once. A run stops at a
+ * deadline and returns where it got to, so very large deletes can be resumed by a background
+ * task. Progress is recorded in a "DeleteJob" entity.
+ */
+public final class BulkDelete {
+
+  /** Kinds that are wiped, in the order they are wiped. */
+  public static final List<String> KINDS =
+      Collections.unmodifiableList(Arrays.asList("Comment", Votes.KIND, VoteCounter.KIND));
+
+  private static final String JOB_KIND = "DeleteJob";
+  private static final String JOB_NAME = "all-comments";
+  // most keys a single datastore delete call accepts
+  private static final int BATCH_SIZE = 500;
+  private static final int MAX_IN_FLIGHT = 4;
+
+  private BulkDelete() {
+    // Disallow instances.
+  }
+
+  /**
+   * Deletes entities until everything is gone or the deadline passes.
+   * @param datastore   The datastore used for queries and progress tracking.
+   * @param async       The async datastore used to issue batched deletes in parallel.
+   * @param kind        The kind to resume from, or null to start from the beginning.
+   * @param cursor      The cursor within {@code kind} to resume from, or null.
+   * @param deadline    The time in milliseconds after which no new batches are started.
+   * @return            How far the run got.
+   */
+  public static Progress run(
+      DatastoreService datastore,
+      AsyncDatastoreService async,
+      String kind,
+      String cursor,
+      long deadline)
+      throws InterruptedException, ExecutionException
+  {
+    int startKind = 0;
+    long deleted = 0;
+    if(kind != null) {
+      // resuming a run, so keep counting from where it stopped
+      startKind = KINDS.indexOf(kind);
+      if(startKind < 0) {
+        throw new IllegalArgumentException("invalid kind " + kind);
+      }
+      deleted = loadProgress(datastore).deleted;
+    }
+
+    Deque<Future<Void>> inFlight = new ArrayDeque<>();
+    for(int k = startKind; k < KINDS.size(); k++) {
+      String currentKind = KINDS.get(k);
+      FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(BATCH_SIZE);
+      if(k == startKind && cursor != null) {
+        fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+      }
+      Query query = new Query(currentKind).setKeysOnly();
+      QueryResultIterator<Entity> itr = 
+          datastore.prepare(query).asQueryResultIterator(fetchOptions);
+
+      List<Key> batch = new ArrayList<>();
+      while(itr.hasNext()) {
+        batch.add(itr.next().getKey());
+        if(batch.size() == BATCH_SIZE || !itr.hasNext()) {
+          if(inFlight.size() >= MAX_IN_FLIGHT) {
+            inFlight.removeFirst().get();
+          }
+          inFlight.addLast(async.delete(batch));
+          deleted += batch.size();
+          batch = new ArrayList<>();
+
+          if(System.currentTimeMillis() > deadline && itr.hasNext()) {
+            awaitAll(inFlight);
+            String resumeCursor = itr.getCursor().toWebSafeString();
+            Progress progress = new Progress(currentKind, resumeCursor, deleted, false);
+            saveProgress(datastore, progress);
+            return progress;
+          }
+        }
+      }
+    }
+    awaitAll(inFlight);
+    Progress progress = new Progress(KINDS.get(KINDS.size() - 1), null, deleted, true);
+    saveProgress(datastore, progress);
+    return progress;
+  }
+
+  /** Returns the progress of the latest run, or a finished empty run if there never was one. */
+  public static Progress loadProgress(DatastoreService datastore) {
+    Entity job;
+    try {
+      job = datastore.get(KeyFactory.createKey(JOB_KIND, JOB_NAME));
+    } catch (EntityNotFoundException e) {
+      return new Progress(KINDS.get(0), null, 0, true);
+    }
+    Object cursor = job.getProperty("cursor");
+    return new Progress(
+        job.getProperty("kind").toString(),
+        cursor == null ? null : cursor.toString(),
+        ((Number) job.getProperty("deleted")).longValue(),
+        (Boolean) job.getProperty("done"));
+  }
+
+  private static void saveProgress(DatastoreService datastore, Progress progress) {
+    Entity job = new Entity(JOB_KIND, JOB_NAME);
+    job.setUnindexedProperty("kind", progress.kind);
+    job.setUnindexedProperty("cursor", progress.cursor);
+    job.setUnindexedProperty("deleted", progress.deleted);
+    job.setUnindexedProperty("done", progress.done);
+    job.setUnindexedProperty("updated", System.currentTimeMillis());
+    datastore.put(job);
+  }
+
+  private static void awaitAll(Deque<Future<Void>> inFlight)
+      throws InterruptedException, ExecutionException
+  {
+    while(!inFlight.isEmpty()) {
+      inFlight.removeFirst().get();
+    }
+  }
+
+  /** How far a bulk delete has got. */
+  public static final class Progress {
+    // kind currently being deleted
+    private final String kind;
+    // cursor to resume from within that kind, or null
+    private final String cursor;
+    // entities deleted so far
+    private final long deleted;
+    // whether everything has been deleted
+    private final boolean done;
+
+    public Progress(String kind, String cursor, long deleted, boolean done) {
+      this.kind = kind;
+      this.cursor = cursor;
+      this.deleted = deleted;
+      this.done = done;
+    }
+
+    public String getKind() {
+      return kind;
+    }
+
+    public String getCursor() {
+      return cursor;
+    }
+
+    public long getDeleted() {
+      return deleted;
+    }
+
+    public boolean isDone() {
+      return done;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.google.sps.data;
+
+import com.google.cloud.translate.Translate;
+import com.google.cloud.translate.Translation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A {@link TranslationBackend} that calls the Cloud Translate API through one shared client. */
+public final class CloudTranslationBackend implements TranslationBackend {
+
+  private final Translate translate;
+
+  public CloudTranslationBackend(Translate translate) {
+    this.translate = translate;
+  }
+
+  @Override
+  public String translate(String text, String targetLanguage) {
+    return translate
+        .translate(text, Translate.TranslateOption.targetLanguage(targetLanguage))
+        .getTranslatedText();
+  }
+
+  @Override
+  public List<String> translate(List<String> texts, String targetLanguage) {
+    List<String> translated = new ArrayList<>();
+    for(Translation translation:
+        translate.translate(texts, Translate.TranslateOption.targetLanguage(targetLanguage))) {
+      translated.add(translation.getTranslatedText());
+    }
+    return translated;
+  }
+
+  @Override
+  public String detect(String text) {
+    return translate.detect(text).getLanguage();
+  }
+}
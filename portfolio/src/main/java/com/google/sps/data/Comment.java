@@ -0,0 +1,74 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Entity;
+
+/**
+ * The fields of a comment that are sent to the client. Only these fixed fields are serialized,
+ * so payload size doesn't grow with whatever else is stored on the comment entity.
+ */
+public final class Comment {
+
+  private final long id;
+  private final String content;
+  private final long timestamp;
+  private final long upvotes;
+  private final String author;
+  private final String name;
+  private final String language;
+  // precomputed translation into the requested language; left out of the JSON when null
+  private final String translation;
+
+  public Comment(
+      long id, String content, long timestamp, long upvotes,
+      String author, String name, String language, String translation)
+  {
+    this.id = id;
+    this.content = content;
+    this.timestamp = timestamp;
+    this.upvotes = upvotes;
+    this.author = author;
+    this.name = name;
+    this.language = language;
+    this.translation = translation;
+  }
+
+  /**
+   * Copies the client-facing fields out of a Comment entity, along with its precomputed
+   * translation into {@code lang} if there is one.
+   * @param lang The language code of the translation to include, or an empty string for none.
+   */
+  public static Comment fromEntity(Entity entity, String lang) {
+    String translation = (lang.length() > 0) ? HotTranslations.stored(entity, lang) : null;
+    return new Comment(
+        entity.getKey().getId(),
+        stringProperty(entity, "content"),
+        longProperty(entity, "timestamp"),
+        longProperty(entity, "upvotes"),
+        stringProperty(entity, "author"),
+        stringProperty(entity, "name"),
+        stringProperty(entity, "language"),
+        translation);
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public String getLanguage() {
+    return language;
+  }
+
+  private static String stringProperty(Entity entity, String property) {
+    Object value = entity.getProperty(property);
+    return (value == null) ? "" : value.toString();
+  }
+
+  private static long longProperty(Entity entity, String property) {
+    Object value = entity.getProperty(property);
+    return (value instanceof Number) ? ((Number) value).longValue() : 0;
+  }
+}
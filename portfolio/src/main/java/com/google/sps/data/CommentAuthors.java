@@ -0,0 +1,52 @@
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Helpers for the normalized author properties that let the datastore filter comments by
+ * author, so a filtered read doesn't have to scan every comment in Java.
+ */
+public final class CommentAuthors {
+
+  /** Indexed, multi-valued comment property holding every normalized form an author matches. */
+  public static final String TOKENS_PROPERTY = "authorTokens";
+
+  private CommentAuthors() {
+    // Disallow instances.
+  }
+
+  /** Strips all whitespace and lowercases a name or email so comparisons are case-insensitive. */
+  public static String normalize(String value) {
+    if(value == null) {
+      return "";
+    }
+    return value.replaceAll("\\s", "").toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Builds the filter tokens for a comment: the normalized nickname, the normalized email,
+   * and the part of the email before the "@".
+   * @param name  The nickname of the author at the time of writing.
+   * @param email The email of the author, or an empty string for guests.
+   * @return      The distinct, non-empty tokens to store on the comment.
+   */
+  public static List<String> tokens(String name, String email) {
+    List<String> tokens = new ArrayList<>();
+    addToken(tokens, normalize(name));
+    String normalizedEmail = normalize(email);
+    addToken(tokens, normalizedEmail);
+    int at = normalizedEmail.indexOf('@');
+    if(at > 0) {
+      addToken(tokens, normalizedEmail.substring(0, at));
+    }
+    return tokens;
+  }
+
+  private static void addToken(List<String> tokens, String token) {
+    if(token.length() > 0 && !tokens.contains(token)) {
+      tokens.add(token);
+    }
+  }
+}
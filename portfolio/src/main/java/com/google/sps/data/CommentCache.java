@@ -0,0 +1,139 @@
+package com.google.sps.data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, per-instance cache of the first page of comment listings, holding each comment
+ * already serialized to JSON. Any write to comments must call {@link #invalidateAll()}; entries
+ * also expire after a short time so writes handled by other instances show up eventually.
+ */
+public final class CommentCache {
+
+  /** Page sizes that are cached. A request is served from the smallest bucket that fits it. */
+  private static final int[] LIMIT_BUCKETS = {10, 25, 50, 100};
+  private static final int MAX_ENTRIES = 64;
+  private static final long TTL_MILLIS = 10 * 1000;
+
+  private static final CommentCache INSTANCE = new CommentCache();
+
+  private final Map<String, Page> pages = new LinkedHashMap<String, Page>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+  // bumped on every invalidation so reads that started before a write can't re-cache stale data
+  private long generation = 0;
+
+  private CommentCache() {}
+
+  public static CommentCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the number of comments to fetch so the page can be cached and reused for
+   * similar requests, or -1 if the request can't be served from the cache.
+   */
+  public static int bucketLimit(CommentQuery query) {
+    if(query.hasCursor()) {
+      return -1;
+    }
+    for(int bucket: LIMIT_BUCKETS) {
+      if(query.getLimit() <= bucket) {
+        return bucket;
+      }
+    }
+    return -1;
+  }
+
+  /** Builds the cache key for a cacheable query. */
+  public static String key(CommentQuery query) {
+    return query.getSortBy() + "|" + query.isDescending() + "|"
+        + CommentAuthors.normalize(query.getAuthor()) + "|" + query.getLang() + "|"
+        + bucketLimit(query);
+  }
+
+  /** Returns the current generation, to be passed back to {@link #put} after a fetch. */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /** Returns the cached page for a key, or null if it is missing or expired. */
+  public synchronized Page get(String key) {
+    Page page = pages.get(key);
+    if(page != null && System.currentTimeMillis() - page.created > TTL_MILLIS) {
+      pages.remove(key);
+      return null;
+    }
+    return page;
+  }
+
+  /**
+   * Caches a page, unless comments were invalidated since {@code fetchGeneration} was read.
+   */
+  public synchronized void put(String key, Page page, long fetchGeneration) {
+    if(fetchGeneration == generation) {
+      pages.put(key, page);
+    }
+  }
+
+  /** Drops every cached page. Called after any comment is added, changed or deleted. */
+  public synchronized void invalidateAll() {
+    generation ++;
+    pages.clear();
+  }
+
+  /** A fetched page of comments, with the continuation token after each of them. */
+  public static final class Page {
+    private final List<Long> ids;
+    private final List<String> comments;
+    private final List<String> cursors;
+    private final boolean hasMore;
+    private final long created;
+
+    /**
+     * @param ids       The ids of the comments in the page.
+     * @param comments  The comments of the page, each serialized to JSON.
+     * @param cursors   The continuation token after each comment.
+     * @param hasMore   Whether there are more comments after the last one in the page.
+     */
+    public Page(List<Long> ids, List<String> comments, List<String> cursors, boolean hasMore) {
+      this.ids = Collections.unmodifiableList(ids);
+      this.comments = Collections.unmodifiableList(comments);
+      this.cursors = Collections.unmodifiableList(cursors);
+      this.hasMore = hasMore;
+      this.created = System.currentTimeMillis();
+    }
+
+    /** Returns how many comments the page holds. */
+    public int size() {
+      return comments.size();
+    }
+
+    /** Returns the ids of the first {@code count} comments. */
+    public List<Long> ids(int count) {
+      return ids.subList(0, count);
+    }
+
+    /** Returns the JSON of the comment at {@code index}. */
+    public String commentJson(int index) {
+      return comments.get(index);
+    }
+
+    /**
+     * Returns the continuation token for the comments after the first {@code count},
+     * or null if there are no more comments. Queries always ask for at least one comment, so
+     * {@code count} is only 0 when the listing is empty.
+     */
+    public String cursorAfter(int count) {
+      if(count > 0 && (count < comments.size() || hasMore)) {
+        return cursors.get(count - 1);
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package com.google.sps.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The settings of a single comment listing request. Instances are immutable and built fresh for
+ * every request, so one request's settings never leak into another.
+ */
+public final class CommentQuery {
+
+  public static final int DEFAULT_LIMIT = 10;
+  public static final String DEFAULT_SORT_BY = "timestamp";
+
+  /** Comment properties that listings can be sorted by. */
+  public static final List<String> SORTABLE_PROPERTIES =
+      Collections.unmodifiableList(Arrays.asList("timestamp", "upvotes", "author"));
+
+  // ISO 639 language code, optionally with a region or script, e.g. "zh-TW"
+  private static final Pattern LANGUAGE_CODE = Pattern.compile("[a-zA-Z]{2,3}(-[a-zA-Z]{2,4})?");
+
+  // upper limit of how many results to return
+  private final int limit;
+  // sort direction - ascending or descending
+  private final boolean descending;
+  // sort criteria
+  private final String sortBy;
+  // author filter, or an empty string for no filter
+  private final String author;
+  // continuation token of the previous page, or an empty string for the first page
+  private final String cursor;
+  // language to include precomputed translations in, or an empty string for none
+  private final String lang;
+
+  private CommentQuery(
+      int limit, boolean descending, String sortBy, String author, String cursor, String lang)
+  {
+    this.limit = limit;
+    this.descending = descending;
+    this.sortBy = sortBy;
+    this.author = author;
+    this.cursor = cursor;
+    this.lang = lang;
+  }
+
+  /**
+   * Builds a query from raw request parameters. Any parameter may be null to use its default.
+   * @param limit   The maximum number of comments to return, at least 1.
+   * @param sort    The sort direction, either "descending" or "ascending".
+   * @param sortBy  The comment property to sort by.
+   * @param author  The author filter.
+   * @param cursor  The continuation token returned with the previous page.
+   * @param lang    The language code to include translations in.
+   * @return        The parsed query.
+   * @throws IllegalArgumentException if any parameter is malformed.
+   */
+  public static CommentQuery fromParameters(
+      String limit, String sort, String sortBy, String author, String cursor, String lang)
+  {
+    int parsedLimit = DEFAULT_LIMIT;
+    if(limit != null) {
+      try {
+        parsedLimit = Integer.parseInt(limit);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("invalid limit " + limit);
+      }
+      // an empty page has no last comment to continue after, so it couldn't say whether
+      // there are more
+      if(parsedLimit < 1) {
+        throw new IllegalArgumentException("invalid limit " + limit);
+      }
+    }
+    boolean descending = true;
+    if(sort != null) {
+      if(sort.equals("descending")) {
+        descending = true;
+      } else if (sort.equals("ascending")) {
+        descending = false;
+      } else {
+        throw new IllegalArgumentException("invalid sort direction " + sort);
+      }
+    }
+    String parsedSortBy = DEFAULT_SORT_BY;
+    if(sortBy != null) {
+      if(!SORTABLE_PROPERTIES.contains(sortBy)) {
+        throw new IllegalArgumentException("invalid sort property " + sortBy);
+      }
+      parsedSortBy = sortBy;
+    }
+    String parsedAuthor = (author == null) ? "" : author.trim();
+    String parsedCursor = (cursor == null) ? "" : cursor;
+    String parsedLang = "";
+    if(lang != null && lang.length() > 0) {
+      if(!isLanguageCode(lang)) {
+        throw new IllegalArgumentException("invalid language " + lang);
+      }
+      parsedLang = lang;
+    }
+    return new CommentQuery(
+        parsedLimit, descending, parsedSortBy, parsedAuthor, parsedCursor, parsedLang);
+  }
+
+  /** Returns whether a string is a language code such as "en" or "zh-TW". */
+  public static boolean isLanguageCode(String lang) {
+    return LANGUAGE_CODE.matcher(lang).matches();
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public boolean isDescending() {
+    return descending;
+  }
+
+  public String getSortBy() {
+    return sortBy;
+  }
+
+  public String getAuthor() {
+    return author;
+  }
+
+  public boolean hasAuthor() {
+    return author.length() > 0;
+  }
+
+  public String getCursor() {
+    return cursor;
+  }
+
+  public boolean hasCursor() {
+    return cursor.length() > 0;
+  }
+
+  public String getLang() {
+    return lang;
+  }
+
+  public boolean hasLang() {
+    return lang.length() > 0;
+  }
+
+  @Override
+  public String toString() {
+    return limit + " results, sorted by " + sortBy + " in " + (descending ? "descending" : "ascending")
+        + " order and author matches " + author;
+  }
+}
@@ -0,0 +1,120 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+/**
+ * Copies a user's new nickname onto every comment they wrote. Comments keep a copy of the name
+ * so listings can be sorted and filtered by it without a lookup per comment, and this rewrite
+ * runs from a background task so renaming costs the request a single put. A run stops at a
+ * deadline and returns a cursor to resume from.
+ */
+public final class CommentRename {
+
+  // a cross-group transaction can span at most 25 entity groups
+  private static final int BATCH_SIZE = 25;
+  private static final int MAX_RETRIES = 3;
+
+  private CommentRename() {
+    // Disallow instances.
+  }
+
+  /**
+   * Renames a user's comments until all are done or the deadline passes. Stops early if the
+   * user has since picked another nickname, since the task for that rename takes over.
+   * @param datastore The datastore holding the comments.
+   * @param email     The email of the user whose comments are renamed.
+   * @param nickname  The new nickname.
+   * @param cursor    The cursor to resume from, or null to start from the beginning.
+   * @param deadline  The time in milliseconds after which no new batches are started.
+   * @return          The cursor to resume from, or null if there is nothing left to do.
+   */
+  public static String run(
+      DatastoreService datastore, String email, String nickname, String cursor, long deadline)
+  {
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(BATCH_SIZE);
+    if(cursor != null) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+    Query query =
+        new Query("Comment")
+            .setFilter(new Query.FilterPredicate("author", Query.FilterOperator.EQUAL, email))
+            .setKeysOnly();
+    QueryResultIterator<Entity> itr = datastore.prepare(query).asQueryResultIterator(fetchOptions);
+
+    List<Key> batch = new ArrayList<>();
+    while(itr.hasNext()) {
+      batch.add(itr.next().getKey());
+      if(batch.size() == BATCH_SIZE || !itr.hasNext()) {
+        if(!isCurrent(datastore, email, nickname)) {
+          return null;
+        }
+        renameBatch(datastore, batch, email, nickname);
+        batch = new ArrayList<>();
+        if(System.currentTimeMillis() > deadline && itr.hasNext()) {
+          return itr.getCursor().toWebSafeString();
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Returns whether {@code nickname} is still the user's stored nickname. */
+  private static boolean isCurrent(DatastoreService datastore, String email, String nickname) {
+    try {
+      Entity user = datastore.get(KeyFactory.createKey(Nicknames.KIND, email));
+      return nickname.equals(user.getProperty("name"));
+    } catch (EntityNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Updates a batch of comments in one transaction, so a vote total synced at the same time is
+   * never overwritten with a stale copy.
+   */
+  private static void renameBatch(
+      DatastoreService datastore, List<Key> keys, String email, String nickname)
+  {
+    List<String> tokens = CommentAuthors.tokens(nickname, email);
+    for(int attempt = 0; ; attempt ++) {
+      Transaction txn = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        List<Entity> puts = new ArrayList<>();
+        for(Entity comment: datastore.get(txn, keys).values()) {
+          if(!nickname.equals(comment.getProperty("name"))) {
+            comment.setProperty("name", nickname);
+            comment.setProperty(CommentAuthors.TOKENS_PROPERTY, tokens);
+            puts.add(comment);
+          }
+        }
+        if(!puts.isEmpty()) {
+          datastore.put(txn, puts);
+        }
+        txn.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if(attempt >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if(txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.google.sps.data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Storage of comments and the votes on them, as used by the servlets. {@link
+ * DatastoreCommentStore} is the production implementation; {@link InMemoryCommentStore} keeps
+ * everything in memory so request handling can be benchmarked off App Engine. Pick one through
+ * {@link Stores}.
+ */
+public interface CommentStore {
+
+  /**
+   * Reads comments matching a listing query, in its sort order and starting after its cursor.
+   * @param query     The listing to read.
+   * @param chunkSize How many comments to fetch from storage at a time.
+   * @throws IllegalArgumentException if the query's cursor is malformed.
+   */
+  Listing list(CommentQuery query, int chunkSize);
+
+  /** Returns the comment with an id, without any translation, or null if it doesn't exist. */
+  Comment get(long id);
+
+  /**
+   * Stores a new comment, with its language still to be detected.
+   * @return The id of the new comment.
+   */
+  long add(String content, String email, String name);
+
+  /** Deletes a comment along with its votes. */
+  void delete(long id);
+
+  /** Applies a batch of one user's votes, as described by {@link Votes#applyVotes}. */
+  Map<Long, Integer> applyVotes(String email, Map<Long, List<Integer>> votes);
+
+  /** Returns a user's non-zero votes on a set of comments, by comment id. */
+  Map<Long, Integer> userVotes(String email, List<Long> ids);
+
+  /**
+   * Returns the current upvote totals of some comments, without writing anything.
+   * @return The totals by comment id. Comments that no longer exist are left out.
+   */
+  Map<Long, Long> totals(List<Long> ids);
+
+  /**
+   * Brings a comment's sortable upvote total up to date after votes. Votes don't do this
+   * themselves; see {@link com.google.sps.servlets.UpvoteSyncServlet}.
+   */
+  void syncTotal(long id);
+
+  /**
+   * Deletes every comment and vote until done or the deadline passes, resuming from where an
+   * earlier run stopped if {@code kind} and {@code cursor} are given.
+   */
+  BulkDelete.Progress deleteAll(String kind, String cursor, long deadline)
+      throws InterruptedException, ExecutionException;
+
+  /** Returns the progress of the latest {@link #deleteAll} run. */
+  BulkDelete.Progress deleteProgress();
+
+  /**
+   * Stores the detected language of a comment without losing changes made to it concurrently.
+   * @return False if the comment no longer exists.
+   */
+  boolean setLanguage(long id, String language);
+
+  /**
+   * Stores the precomputed translations of a comment, replacing any stored before, without
+   * losing other changes made to the comment concurrently.
+   * @param translations Translations of the comment by language code.
+   * @return             False if the comment no longer exists.
+   */
+  boolean setTranslations(long id, Map<String, String> translations);
+
+  /**
+   * Copies a user's new nickname onto their comments until done or the deadline passes.
+   * @param cursor The cursor to resume from, or null to start from the beginning.
+   * @return       The cursor to resume from, or null if there is nothing left to do.
+   */
+  String renameAuthor(String email, String nickname, String cursor, long deadline);
+
+  /**
+   * Returns whether every comment carries author tokens. Until then, listings filtered by
+   * author still work but have to check each comment themselves.
+   */
+  boolean authorTokensReady();
+
+  /**
+   * Adds author tokens to comments written before they existed, until done or the deadline
+   * passes.
+   * @param cursor The cursor to resume from, or null to start from the beginning.
+   * @return       The cursor to resume from, or null if there is nothing left to do.
+   */
+  String backfillAuthorTokens(String cursor, long deadline);
+
+  /**
+   * Returns whether every vote stored the old way, as a property on the comment, has been moved
+   * to its own vote record.
+   */
+  boolean legacyVotesMigrated();
+
+  /**
+   * Moves old-style votes off comments into vote records, until done or the deadline passes.
+   * Upvote totals are unchanged, since they already count these votes.
+   * @param cursor The cursor to resume from, or null to start from the beginning.
+   * @return       The cursor to resume from, or null if there is nothing left to do.
+   */
+  String migrateLegacyVotes(String cursor, long deadline);
+
+  /** Comments being read from a listing. */
+  interface Listing {
+
+    boolean hasNext();
+
+    Comment next();
+
+    /** Returns the continuation token for the comments after the last one returned. */
+    String cursor();
+  }
+}
@@ -0,0 +1,274 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.EmbeddedEntity;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.datastore.Text;
+import com.google.appengine.api.datastore.Transaction;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/** A {@link CommentStore} backed by App Engine datastore. */
+public final class DatastoreCommentStore implements CommentStore {
+
+  // how many times a change to one comment is retried when it collides with another
+  private static final int MAX_UPDATE_RETRIES = 5;
+
+  private final DatastoreService datastore;
+  private final AsyncDatastoreService async;
+
+  public DatastoreCommentStore(DatastoreService datastore, AsyncDatastoreService async) {
+    this.datastore = datastore;
+    this.async = async;
+  }
+
+  @Override
+  public Listing list(CommentQuery commentQuery, int chunkSize) {
+    Query query = new Query("Comment");
+    // author filter matches the normalized nickname, email, or email username
+    String token = 
+        commentQuery.hasAuthor() ? CommentAuthors.normalize(commentQuery.getAuthor()) : null;
+    // comments may lack tokens until the backfill finishes, so until then filter them here
+    boolean filterHere = token != null && !authorTokensReady();
+    if(token != null && !filterHere) {
+      query.setFilter(new Query.FilterPredicate(
+          CommentAuthors.TOKENS_PROPERTY, Query.FilterOperator.EQUAL, token));
+    }
+    if(commentQuery.isDescending()) {
+      query.addSort(commentQuery.getSortBy(), SortDirection.DESCENDING);
+    } else {
+      query.addSort(commentQuery.getSortBy(), SortDirection.ASCENDING);
+    }
+
+    // resume from the continuation token of the previous page, if there is one
+    FetchOptions fetchOptions = 
+        FetchOptions.Builder.withChunkSize(chunkSize).prefetchSize(chunkSize);
+    if(commentQuery.hasCursor()) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(commentQuery.getCursor()));
+    }
+    QueryResultIterator<Entity> itr = 
+        datastore.prepare(query).asQueryResultIterator(fetchOptions);
+    String lang = commentQuery.getLang();
+    if(filterHere) {
+      return new FilteringListing(itr, token, lang, commentQuery.getCursor());
+    }
+    return new Listing() {
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public Comment next() {
+        return Comment.fromEntity(itr.next(), lang);
+      }
+
+      @Override
+      public String cursor() {
+        return itr.getCursor().toWebSafeString();
+      }
+    };
+  }
+
+  @Override
+  public Comment get(long id) {
+    try {
+      return Comment.fromEntity(datastore.get(KeyFactory.createKey("Comment", id)), "");
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public long add(String content, String email, String name) {
+    Entity comment = new Entity("Comment");
+    comment.setProperty("content", content);
+    comment.setProperty("timestamp", System.currentTimeMillis());
+    comment.setProperty("upvotes", 0);
+    comment.setUnindexedProperty(VoteCounter.BASE_PROPERTY, 0);
+    comment.setProperty("author", email);
+    comment.setProperty("name", name);
+    // the language is detected later so submitting doesn't wait on the Translate API
+    comment.setProperty("language", LanguageDetector.PENDING);
+    comment.setProperty(CommentAuthors.TOKENS_PROPERTY, CommentAuthors.tokens(name, email));
+    datastore.put(comment);
+    return comment.getKey().getId();
+  }
+
+  @Override
+  public void delete(long id) {
+    datastore.delete(KeyFactory.createKey("Comment", id));
+    Votes.deleteVotes(datastore, id);
+    VoteCounter.deleteShards(datastore, id);
+  }
+
+  @Override
+  public Map<Long, Integer> applyVotes(String email, Map<Long, List<Integer>> votes) {
+    return Votes.applyVotes(datastore, email, votes);
+  }
+
+  @Override
+  public Map<Long, Integer> userVotes(String email, List<Long> ids) {
+    return Votes.userVotes(datastore, email, ids);
+  }
+
+  @Override
+  public Map<Long, Long> totals(List<Long> ids) {
+    return VoteCounter.totals(datastore, ids);
+  }
+
+  @Override
+  public void syncTotal(long id) {
+    VoteCounter.syncTotal(datastore, id);
+  }
+
+  @Override
+  public BulkDelete.Progress deleteAll(String kind, String cursor, long deadline)
+      throws InterruptedException, ExecutionException
+  {
+    return BulkDelete.run(datastore, async, kind, cursor, deadline);
+  }
+
+  @Override
+  public BulkDelete.Progress deleteProgress() {
+    return BulkDelete.loadProgress(datastore);
+  }
+
+  @Override
+  public boolean setLanguage(long id, String language) {
+    return update(id, comment -> comment.setProperty("language", language));
+  }
+
+  @Override
+  public boolean setTranslations(long id, Map<String, String> translations) {
+    EmbeddedEntity embedded = new EmbeddedEntity();
+    for(Map.Entry<String, String> translation: translations.entrySet()) {
+      embedded.setUnindexedProperty(translation.getKey(), new Text(translation.getValue()));
+    }
+    return update(id, comment -> comment.setUnindexedProperty(HotTranslations.PROPERTY, embedded));
+  }
+
+  @Override
+  public boolean authorTokensReady() {
+    return AuthorTokenBackfill.isDone(datastore);
+  }
+
+  @Override
+  public String backfillAuthorTokens(String cursor, long deadline) {
+    return AuthorTokenBackfill.run(datastore, cursor, deadline);
+  }
+
+  @Override
+  public boolean legacyVotesMigrated() {
+    return LegacyVoteMigration.isDone(datastore);
+  }
+
+  @Override
+  public String migrateLegacyVotes(String cursor, long deadline) {
+    return LegacyVoteMigration.run(datastore, cursor, deadline);
+  }
+
+  /**
+   * Changes a stored comment in a transaction, so a rename or sync that lands between the read
+   * and the write makes the change retry on the new entity instead of being overwritten.
+   * @return False if the comment no longer exists.
+   * @throws ConcurrentModificationException if it keeps colliding; task queue tasks then retry.
+   */
+  private boolean update(long id, Consumer<Entity> change) {
+    Key key = KeyFactory.createKey("Comment", id);
+    for(int attempt = 0; ; attempt ++) {
+      Transaction txn = datastore.beginTransaction();
+      try {
+        Entity comment = datastore.get(txn, key);
+        change.accept(comment);
+        datastore.put(txn, comment);
+        txn.commit();
+        return true;
+      } catch (EntityNotFoundException e) {
+        return false;
+      } catch (ConcurrentModificationException e) {
+        if(attempt >= MAX_UPDATE_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if(txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+  }
+
+  @Override
+  public String renameAuthor(String email, String nickname, String cursor, long deadline) {
+    return CommentRename.run(datastore, email, nickname, cursor, deadline);
+  }
+
+  /**
+   * Reads a listing while skipping comments whose author doesn't match a token, computing the
+   * tokens of each comment as it goes. Used only until {@link AuthorTokenBackfill} is done.
+   */
+  private static final class FilteringListing implements Listing {
+    private final QueryResultIterator<Entity> itr;
+    private final String token;
+    private final String lang;
+    private Entity upcoming;
+    private Cursor upcomingCursor;
+    private String lastCursor;
+
+    FilteringListing(
+        QueryResultIterator<Entity> itr, String token, String lang, String startCursor) 
+    {
+      this.itr = itr;
+      this.token = token;
+      this.lang = lang;
+      this.lastCursor = startCursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while(upcoming == null && itr.hasNext()) {
+        Entity comment = itr.next();
+        Object name = comment.getProperty("name");
+        Object author = comment.getProperty("author");
+        List<String> tokens = CommentAuthors.tokens(
+            (name == null) ? "" : name.toString(), (author == null) ? "" : author.toString());
+        if(tokens.contains(token)) {
+          upcoming = comment;
+          // the cursor must point right after this comment, not after any skipped behind it
+          upcomingCursor = itr.getCursor();
+        }
+      }
+      return upcoming != null;
+    }
+
+    @Override
+    public Comment next() {
+      if(!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Comment comment = Comment.fromEntity(upcoming, lang);
+      lastCursor = upcomingCursor.toWebSafeString();
+      upcoming = null;
+      return comment;
+    }
+
+    @Override
+    public String cursor() {
+      return lastCursor;
+    }
+  }
+}
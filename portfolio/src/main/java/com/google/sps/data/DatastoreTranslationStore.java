@@ -0,0 +1,53 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Text;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A {@link TranslationStore} keeping one "Translation" entity per key. */
+public final class DatastoreTranslationStore implements TranslationStore {
+
+  public static final String KIND = "Translation";
+
+  private final DatastoreService datastore;
+
+  public DatastoreTranslationStore(DatastoreService datastore) {
+    this.datastore = datastore;
+  }
+
+  @Override
+  public Map<String, String> getAll(List<String> keys) {
+    List<Key> entityKeys = new ArrayList<>();
+    for(String key: keys) {
+      entityKeys.add(KeyFactory.createKey(KIND, key));
+    }
+    Map<String, String> translations = new HashMap<>();
+    for(Entity entity: datastore.get(entityKeys).values()) {
+      translations.put(
+          entity.getKey().getName(), ((Text) entity.getProperty("translated")).getValue());
+    }
+    return translations;
+  }
+
+  @Override
+  public void putAll(Map<String, String> translations) {
+    List<Entity> puts = new ArrayList<>();
+    for(Map.Entry<String, String> translation: translations.entrySet()) {
+      String key = translation.getKey();
+      Entity entity = new Entity(KIND, key);
+      entity.setUnindexedProperty("translated", new Text(translation.getValue()));
+      // keys end with the target language
+      entity.setUnindexedProperty("lang", key.substring(key.lastIndexOf(':') + 1));
+      entity.setUnindexedProperty("created", System.currentTimeMillis());
+      puts.add(entity);
+    }
+    datastore.put(puts);
+  }
+}
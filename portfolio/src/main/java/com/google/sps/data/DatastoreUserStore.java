@@ -0,0 +1,28 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+
+/** A {@link UserStore} backed by datastore "User" entities, read through {@link Nicknames}. */
+public final class DatastoreUserStore implements UserStore {
+
+  private final DatastoreService datastore;
+
+  public DatastoreUserStore(DatastoreService datastore) {
+    this.datastore = datastore;
+  }
+
+  @Override
+  public String nickname(String email) {
+    return Nicknames.getInstance().nickname(datastore, email);
+  }
+
+  @Override
+  public String currentNickname(String email) {
+    return Nicknames.getInstance().currentNickname(datastore, email);
+  }
+
+  @Override
+  public void storeNickname(String email, String nickname) {
+    Nicknames.getInstance().store(datastore, email, nickname);
+  }
+}
@@ -0,0 +1,98 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.EmbeddedEntity;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translations of each comment into a configured set of popular ("hot") languages, computed
+ * once after the comment is written and stored with it (in datastore, as an embedded
+ * "translations" entity), so listings can return them inline. The languages come from the
+ * comma-separated {@code comments.hotLanguages} system property in appengine-web.xml; when it
+ * is empty, nothing is precomputed and clients translate lazily as before.
+ */
+public final class HotTranslations {
+
+  public static final String PROPERTY = "translations";
+  public static final String LANGUAGES_PROPERTY = "comments.hotLanguages";
+
+  private static final List<String> LANGUAGES =
+      parseLanguages(System.getProperty(LANGUAGES_PROPERTY));
+
+  private HotTranslations() {
+    // Disallow instances.
+  }
+
+  /** Returns the configured hot languages. */
+  public static List<String> languages() {
+    return LANGUAGES;
+  }
+
+  /**
+   * Translates a comment into every hot language it isn't already written in and stores the
+   * results on the comment. Translations go through the {@link TranslationCache}, so text that
+   * was translated before costs no API calls. The API calls happen outside any transaction; the
+   * comment is re-read and written transactionally by {@link CommentStore#setTranslations}.
+   * @param store        The store holding the comment.
+   * @param translations The store holding persisted translations.
+   * @param backend      The backend used for translations that aren't cached yet.
+   * @param commentId    The id of the comment to translate.
+   * @return             How many translations were stored, or -1 if the comment no longer exists.
+   */
+  public static int precompute(
+      CommentStore store, TranslationStore translations, TranslationBackend backend, long commentId)
+  {
+    if(LANGUAGES.isEmpty()) {
+      return 0;
+    }
+    Comment comment = store.get(commentId);
+    if(comment == null) {
+      return -1;
+    }
+
+    Map<String, String> translated = new HashMap<>();
+    TranslationCache cache = TranslationCache.getInstance();
+    for(String lang: LANGUAGES) {
+      if(lang.equals(comment.getLanguage())) {
+        // served from the content itself, see stored()
+        continue;
+      }
+      translated.put(lang, cache.translate(translations, backend, comment.getContent(), lang));
+    }
+    return store.setTranslations(commentId, translated) ? translated.size() : -1;
+  }
+
+  /**
+   * Returns the stored translation of a comment entity into a language, or null if it wasn't
+   * precomputed. A comment already written in that language is its own translation.
+   */
+  public static String stored(Entity comment, String lang) {
+    if(lang.equals(comment.getProperty("language"))) {
+      return comment.getProperty("content").toString();
+    }
+    Object translations = comment.getProperty(PROPERTY);
+    if(!(translations instanceof EmbeddedEntity)) {
+      return null;
+    }
+    Object translation = ((EmbeddedEntity) translations).getProperty(lang);
+    return (translation instanceof Text) ? ((Text) translation).getValue() : null;
+  }
+
+  private static List<String> parseLanguages(String property) {
+    List<String> languages = new ArrayList<>();
+    if(property != null) {
+      for(String lang: property.split(",")) {
+        if(lang.trim().length() > 0) {
+          languages.add(lang.trim());
+        }
+      }
+    }
+    return Collections.unmodifiableList(languages);
+  }
+}
@@ -0,0 +1,419 @@
+package com.google.sps.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link CommentStore} held entirely in memory, for benchmarks and load tests that run without
+ * App Engine. Each sortable property has a concurrent sorted index, plus one per author token
+ * so filtered listings only visit matching comments; listings are read in order without
+ * sorting. Changes to a single comment are serialized by locking that comment. Nothing is
+ * persisted and nothing is shared between instances.
+ */
+public final class InMemoryCommentStore implements CommentStore {
+
+  private final AtomicLong nextId = new AtomicLong(1);
+  private final Map<Long, StoredComment> comments = new ConcurrentHashMap<>();
+  // one index per sortable property, ordered by (property value, id)
+  private final Map<String, NavigableSet<IndexKey>> indexes = new HashMap<>();
+  // the same indexes holding only the comments matching an author token, by token
+  private final Map<String, Map<String, NavigableSet<IndexKey>>> authorIndexes = 
+      new ConcurrentHashMap<>();
+  private volatile BulkDelete.Progress lastDelete = 
+      new BulkDelete.Progress(BulkDelete.KINDS.get(0), null, 0, true);
+
+  public InMemoryCommentStore() {
+    for(String property: CommentQuery.SORTABLE_PROPERTIES) {
+      indexes.put(property, new ConcurrentSkipListSet<IndexKey>());
+    }
+  }
+
+  @Override
+  public Listing list(CommentQuery query, int chunkSize) {
+    String sortBy = query.getSortBy();
+    String token = query.hasAuthor() ? CommentAuthors.normalize(query.getAuthor()) : null;
+    NavigableSet<IndexKey> index = indexes.get(sortBy);
+    if(token != null) {
+      // looked up without creating, so filters nobody matches don't leave empty indexes behind
+      Map<String, NavigableSet<IndexKey>> byProperty = authorIndexes.get(token);
+      index = (byProperty == null) ? new TreeSet<IndexKey>() : byProperty.get(sortBy);
+    }
+    if(query.isDescending()) {
+      index = index.descendingSet();
+    }
+    if(query.hasCursor()) {
+      index = index.tailSet(decodeCursor(sortBy, query.getCursor()), false);
+    }
+    return new IndexListing(index.iterator(), sortBy, token, query.getLang());
+  }
+
+  @Override
+  public Comment get(long id) {
+    StoredComment comment = comments.get(id);
+    return (comment == null) ? null : comment.toComment("");
+  }
+
+  @Override
+  public long add(String content, String email, String name) {
+    StoredComment comment = new StoredComment(
+        nextId.getAndIncrement(), content, System.currentTimeMillis(), email, name);
+    comments.put(comment.id, comment);
+    synchronized(comment) {
+      for(String property: CommentQuery.SORTABLE_PROPERTIES) {
+        index(comment, property);
+      }
+    }
+    return comment.id;
+  }
+
+  @Override
+  public void delete(long id) {
+    StoredComment comment = comments.remove(id);
+    if(comment == null) {
+      return;
+    }
+    synchronized(comment) {
+      for(String property: CommentQuery.SORTABLE_PROPERTIES) {
+        unindex(comment, property);
+      }
+    }
+  }
+
+  @Override
+  public Map<Long, Integer> applyVotes(String email, Map<Long, List<Integer>> votes) {
+    Map<Long, Integer> results = new LinkedHashMap<>();
+    for(Map.Entry<Long, List<Integer>> entry: votes.entrySet()) {
+      StoredComment comment = comments.get(entry.getKey());
+      if(comment == null) {
+        continue;
+      }
+      synchronized(comment) {
+        Integer current = comment.votes.get(email);
+        int currentVote = (current == null) ? 0 : current;
+        int newVote = currentVote;
+        for(int vote: entry.getValue()) {
+          newVote = (vote == newVote) ? 0 : vote;
+        }
+        if(newVote == 0) {
+          comment.votes.remove(email);
+        } else {
+          comment.votes.put(email, newVote);
+        }
+        if(newVote != currentVote) {
+          // re-file the comment under its new score
+          unindex(comment, "upvotes");
+          comment.upvotes += newVote - currentVote;
+          index(comment, "upvotes");
+        }
+        results.put(comment.id, newVote);
+      }
+    }
+    return results;
+  }
+
+  @Override
+  public Map<Long, Integer> userVotes(String email, List<Long> ids) {
+    Map<Long, Integer> votes = new HashMap<>();
+    for(long id: ids) {
+      StoredComment comment = comments.get(id);
+      Integer vote = (comment == null) ? null : comment.votes.get(email);
+      if(vote != null) {
+        votes.put(id, vote);
+      }
+    }
+    return votes;
+  }
+
+  @Override
+  public Map<Long, Long> totals(List<Long> ids) {
+    Map<Long, Long> totals = new LinkedHashMap<>();
+    for(long id: ids) {
+      StoredComment comment = comments.get(id);
+      if(comment != null) {
+        totals.put(id, comment.upvotes);
+      }
+    }
+    return totals;
+  }
+
+  @Override
+  public void syncTotal(long id) {
+    // totals and the upvotes index are updated along with the votes
+  }
+
+  @Override
+  public BulkDelete.Progress deleteAll(String kind, String cursor, long deadline) {
+    long deleted = 0;
+    for(long id: comments.keySet()) {
+      StoredComment comment = comments.get(id);
+      if(comment != null) {
+        deleted += 1 + comment.votes.size();
+        delete(id);
+      }
+    }
+    lastDelete = new BulkDelete.Progress(
+        BulkDelete.KINDS.get(BulkDelete.KINDS.size() - 1), null, deleted, true);
+    return lastDelete;
+  }
+
+  @Override
+  public BulkDelete.Progress deleteProgress() {
+    return lastDelete;
+  }
+
+  @Override
+  public boolean setLanguage(long id, String language) {
+    StoredComment comment = comments.get(id);
+    if(comment == null) {
+      return false;
+    }
+    comment.language = language;
+    return true;
+  }
+
+  @Override
+  public boolean setTranslations(long id, Map<String, String> translations) {
+    StoredComment comment = comments.get(id);
+    if(comment == null) {
+      return false;
+    }
+    comment.translations = Collections.unmodifiableMap(new HashMap<>(translations));
+    return true;
+  }
+
+  @Override
+  public String renameAuthor(String email, String nickname, String cursor, long deadline) {
+    List<String> tokens = CommentAuthors.tokens(nickname, email);
+    for(StoredComment comment: comments.values()) {
+      if(comment.author.equals(email)) {
+        synchronized(comment) {
+          // re-file the comment under its new author tokens
+          for(String property: CommentQuery.SORTABLE_PROPERTIES) {
+            unindex(comment, property);
+          }
+          comment.name = nickname;
+          comment.tokens = tokens;
+          for(String property: CommentQuery.SORTABLE_PROPERTIES) {
+            index(comment, property);
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean authorTokensReady() {
+    // tokens are computed whenever a comment is added or renamed
+    return true;
+  }
+
+  @Override
+  public String backfillAuthorTokens(String cursor, long deadline) {
+    return null;
+  }
+
+  @Override
+  public boolean legacyVotesMigrated() {
+    // votes here have always been kept apart from comments
+    return true;
+  }
+
+  @Override
+  public String migrateLegacyVotes(String cursor, long deadline) {
+    return null;
+  }
+
+  /** Returns an author token's index on a property, creating it if needed. */
+  private NavigableSet<IndexKey> authorIndex(String token, String property) {
+    return authorIndexes.computeIfAbsent(token, t -> {
+      Map<String, NavigableSet<IndexKey>> byProperty = new HashMap<>();
+      for(String sortable: CommentQuery.SORTABLE_PROPERTIES) {
+        byProperty.put(sortable, new ConcurrentSkipListSet<IndexKey>());
+      }
+      return byProperty;
+    }).get(property);
+  }
+
+  /** Files a comment in the indexes on a property. Callers hold the comment's lock. */
+  private void index(StoredComment comment, String property) {
+    IndexKey key = comment.indexKey(property);
+    indexes.get(property).add(key);
+    for(String token: comment.tokens) {
+      authorIndex(token, property).add(key);
+    }
+  }
+
+  /** Removes a comment from the indexes on a property. Callers hold the comment's lock. */
+  private void unindex(StoredComment comment, String property) {
+    IndexKey key = comment.indexKey(property);
+    indexes.get(property).remove(key);
+    for(String token: comment.tokens) {
+      authorIndex(token, property).remove(key);
+    }
+  }
+
+  /** Builds the continuation token for a position in an index. */
+  private static String encodeCursor(IndexKey key) {
+    String position = key.value + "\n" + key.id;
+    return Base64.getUrlEncoder().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Parses a continuation token built by {@link #encodeCursor} for an index. */
+  private static IndexKey decodeCursor(String sortBy, String cursor) {
+    try {
+      String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int split = position.lastIndexOf('\n');
+      String value = position.substring(0, split);
+      long id = Long.parseLong(position.substring(split + 1));
+      if(sortBy.equals("author")) {
+        return new IndexKey(value, id);
+      }
+      return new IndexKey(Long.parseLong(value), id);
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("invalid cursor " + cursor);
+    }
+  }
+
+  /**
+   * Reads a listing off an index. Filtered listings read an author token's index, so the token
+   * check only skips comments that are being re-filed by a concurrent rename.
+   */
+  private final class IndexListing implements Listing {
+    private final Iterator<IndexKey> itr;
+    private final String sortBy;
+    private final String token;
+    private final String lang;
+    private StoredComment upcoming;
+    private IndexKey upcomingKey;
+    private IndexKey lastKey;
+
+    IndexListing(Iterator<IndexKey> itr, String sortBy, String token, String lang) {
+      this.itr = itr;
+      this.sortBy = sortBy;
+      this.token = token;
+      this.lang = lang;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while(upcoming == null && itr.hasNext()) {
+        IndexKey key = itr.next();
+        StoredComment comment = comments.get(key.id);
+        // the index may briefly hold a comment that was just deleted or re-filed
+        if(comment == null || !key.equals(comment.indexKey(sortBy))) {
+          continue;
+        }
+        if(token == null || comment.tokens.contains(token)) {
+          upcoming = comment;
+          upcomingKey = key;
+        }
+      }
+      return upcoming != null;
+    }
+
+    @Override
+    public Comment next() {
+      if(!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Comment comment = upcoming.toComment(lang);
+      lastKey = upcomingKey;
+      upcoming = null;
+      return comment;
+    }
+
+    @Override
+    public String cursor() {
+      return (lastKey == null) ? "" : encodeCursor(lastKey);
+    }
+  }
+
+  /** A position in an index: a property value and the comment id to break ties. */
+  private static final class IndexKey implements Comparable<IndexKey> {
+    // a Long for numeric properties, a String otherwise
+    private final Comparable<Object> value;
+    private final long id;
+
+    @SuppressWarnings("unchecked")
+    IndexKey(Comparable<?> value, long id) {
+      this.value = (Comparable<Object>) value;
+      this.id = id;
+    }
+
+    @Override
+    public int compareTo(IndexKey other) {
+      int byValue = value.compareTo(other.value);
+      return (byValue != 0) ? byValue : Long.compare(id, other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if(!(o instanceof IndexKey)) {
+        return false;
+      }
+      IndexKey other = (IndexKey) o;
+      return id == other.id && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return value.hashCode() * 31 + Long.hashCode(id);
+    }
+  }
+
+  /** A comment and the votes on it. Fields that change are guarded by the object's lock. */
+  private static final class StoredComment {
+    final long id;
+    final String content;
+    final long timestamp;
+    final String author;
+    volatile String name;
+    volatile List<String> tokens;
+    volatile long upvotes = 0;
+    volatile String language = LanguageDetector.PENDING;
+    volatile Map<String, String> translations = Collections.emptyMap();
+    // each voter's non-zero vote, by email
+    final Map<String, Integer> votes = new ConcurrentHashMap<>();
+
+    StoredComment(long id, String content, long timestamp, String author, String name) {
+      this.id = id;
+      this.content = content;
+      this.timestamp = timestamp;
+      this.author = author;
+      this.name = name;
+      this.tokens = CommentAuthors.tokens(name, author);
+    }
+
+    IndexKey indexKey(String property) {
+      switch(property) {
+        case "timestamp":
+          return new IndexKey(timestamp, id);
+        case "upvotes":
+          return new IndexKey(upvotes, id);
+        default:
+          return new IndexKey(author, id);
+      }
+    }
+
+    Comment toComment(String lang) {
+      String translation = null;
+      if(lang.length() > 0) {
+        translation = lang.equals(language) ? content : translations.get(lang);
+      }
+      return new Comment(id, content, timestamp, upvotes, author, name, language, translation);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.google.sps.data;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TaskQueue} for benchmarks and load tests that only counts the tasks added. Tasks
+ * never run, so in-memory comments keep the language they were stored with.
+ */
+public final class InMemoryTaskQueue implements TaskQueue {
+
+  private final AtomicLong added = new AtomicLong();
+  private final Set<String> names = ConcurrentHashMap.newKeySet();
+
+  @Override
+  public void add(String queueName, String url, Map<String, String> params) {
+    added.incrementAndGet();
+  }
+
+  @Override
+  public boolean addOnce(
+      String queueName, String taskName, long delayMillis, String url, Map<String, String> params)
+  {
+    if(!names.add(queueName + "/" + taskName)) {
+      return false;
+    }
+    added.incrementAndGet();
+    return true;
+  }
+
+  /** Returns how many tasks have been added. */
+  public long added() {
+    return added.get();
+  }
+}
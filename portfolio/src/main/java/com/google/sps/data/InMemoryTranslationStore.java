@@ -0,0 +1,29 @@
+package com.google.sps.data;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** A {@link TranslationStore} held in memory, for benchmarks and load tests. */
+public final class InMemoryTranslationStore implements TranslationStore {
+
+  private final Map<String, String> translations = new ConcurrentHashMap<>();
+
+  @Override
+  public Map<String, String> getAll(List<String> keys) {
+    Map<String, String> found = new HashMap<>();
+    for(String key: keys) {
+      String translation = translations.get(key);
+      if(translation != null) {
+        found.put(key, translation);
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public void putAll(Map<String, String> translations) {
+    this.translations.putAll(translations);
+  }
+}
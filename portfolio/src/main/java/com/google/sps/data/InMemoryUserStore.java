@@ -0,0 +1,25 @@
+package com.google.sps.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** A {@link UserStore} held in memory, for benchmarks and load tests. */
+public final class InMemoryUserStore implements UserStore {
+
+  private final Map<String, String> nicknames = new ConcurrentHashMap<>();
+
+  @Override
+  public String nickname(String email) {
+    return nicknames.get(email);
+  }
+
+  @Override
+  public String currentNickname(String email) {
+    return nicknames.get(email);
+  }
+
+  @Override
+  public void storeNickname(String email, String nickname) {
+    nicknames.put(email, nickname);
+  }
+}
@@ -0,0 +1,40 @@
+package com.google.sps.data;
+
+/**
+ * Fills in the language of comments after they have been stored. New comments are saved with
+ * the language {@link #PENDING}, and detection runs later from a task queue task, so submitting
+ * a comment doesn't wait on the Translate API.
+ */
+public final class LanguageDetector {
+
+  /** Language stored on a comment until detection has run. */
+  public static final String PENDING = "pending";
+
+  private final TranslationBackend translation;
+
+  /**
+   * @param translation The backend used for detection. Any implementation works, so a local
+   *                    stub can stand in for the real API.
+   */
+  public LanguageDetector(TranslationBackend translation) {
+    this.translation = translation;
+  }
+
+  /**
+   * Detects the language of a comment and stores it on the comment. Detection runs outside any
+   * transaction; only the final read-modify-write in {@link CommentStore#setLanguage} is
+   * transactional, so a slow API call never holds up renames or syncs of the comment.
+   * @param store     The store holding the comment.
+   * @param commentId The id of the comment to update.
+   * @return          The detected language, or null if the comment no longer exists.
+   */
+  public String detectAndStore(CommentStore store, long commentId) {
+    Comment comment = store.get(commentId);
+    if(comment == null) {
+      // comment was deleted before its language was detected
+      return null;
+    }
+    String language = translation.detect(comment.getContent());
+    return store.setLanguage(commentId, language) ? language : null;
+  }
+}
@@ -0,0 +1,152 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves votes stored the old way, as properties on the comment named by the voter's email, over
+ * to {@link Votes} entities and removes them from the comment. The comment's upvote total already
+ * counts these votes, so only the record of who voted moves. A run stops at a deadline and
+ * returns a cursor to resume from; once a run reaches the end, a "MigrationJob" entity records
+ * that no comment holds old-style votes any more.
+ */
+public final class LegacyVoteMigration {
+
+  private static final String JOB_KIND = "MigrationJob";
+  private static final String JOB_NAME = "legacy-votes";
+  // how many comments are read per query batch
+  private static final int BATCH_SIZE = 25;
+  // a cross-group transaction can span at most 25 entity groups: the comment plus its votes
+  private static final int MAX_VOTES_PER_TRANSACTION = 24;
+  private static final int MAX_RETRIES = 3;
+
+  // set once a finished run has been seen, since it never becomes unfinished again
+  private static volatile boolean done = false;
+
+  private LegacyVoteMigration() {
+    // Disallow instances.
+  }
+
+  /** Returns whether every old-style vote has been moved to a Vote entity. */
+  public static boolean isDone(DatastoreService datastore) {
+    if(!done) {
+      try {
+        Entity job = datastore.get(KeyFactory.createKey(JOB_KIND, JOB_NAME));
+        done = Boolean.TRUE.equals(job.getProperty("done"));
+      } catch (EntityNotFoundException e) {
+        return false;
+      }
+    }
+    return done;
+  }
+
+  /**
+   * Moves old-style votes off comments until all are done or the deadline passes.
+   * @param datastore The datastore holding the comments.
+   * @param cursor    The cursor to resume from, or null to start from the beginning.
+   * @param deadline  The time in milliseconds after which no new comments are started.
+   * @return          The cursor to resume from, or null if no comment holds old-style votes.
+   */
+  public static String run(DatastoreService datastore, String cursor, long deadline) {
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(BATCH_SIZE);
+    if(cursor != null) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+    QueryResultIterator<Entity> itr =
+        datastore.prepare(new Query("Comment")).asQueryResultIterator(fetchOptions);
+
+    while(itr.hasNext()) {
+      Entity comment = itr.next();
+      List<String> voters = legacyVoters(comment);
+      for(int start = 0; start < voters.size(); start += MAX_VOTES_PER_TRANSACTION) {
+        int end = Math.min(voters.size(), start + MAX_VOTES_PER_TRANSACTION);
+        moveVotes(datastore, comment.getKey(), voters.subList(start, end));
+      }
+      if(System.currentTimeMillis() > deadline && itr.hasNext()) {
+        return itr.getCursor().toWebSafeString();
+      }
+    }
+
+    Entity job = new Entity(JOB_KIND, JOB_NAME);
+    job.setUnindexedProperty("done", true);
+    job.setUnindexedProperty("updated", System.currentTimeMillis());
+    datastore.put(job);
+    done = true;
+    return null;
+  }
+
+  /** Returns the emails of the users whose votes are still stored on a comment. */
+  private static List<String> legacyVoters(Entity comment) {
+    List<String> voters = new ArrayList<>();
+    // none of the comment's own properties have an '@' in their name, but every email does
+    for(String property: comment.getProperties().keySet()) {
+      if(property.contains("@")) {
+        voters.add(property);
+      }
+    }
+    return voters;
+  }
+
+  /**
+   * Moves some of a comment's old-style votes in one transaction, so a vote cast by the same
+   * user at the same time either sees the old-style vote or the moved one, never both.
+   */
+  private static void moveVotes(DatastoreService datastore, Key commentKey, List<String> voters) {
+    long commentId = commentKey.getId();
+    for(int attempt = 0; ; attempt ++) {
+      Transaction txn = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        List<Key> keys = new ArrayList<>();
+        keys.add(commentKey);
+        for(String email: voters) {
+          keys.add(Votes.key(commentId, email));
+        }
+        Map<Key, Entity> found = datastore.get(txn, keys);
+        Entity comment = found.get(commentKey);
+        if(comment == null) {
+          // deleted since it was read
+          return;
+        }
+
+        List<Entity> puts = new ArrayList<>();
+        for(String email: voters) {
+          if(!comment.hasProperty(email)) {
+            continue;
+          }
+          int vote = Integer.parseInt(comment.getProperty(email).toString());
+          // a Vote entity is newer than the old-style vote, so it wins
+          if(vote != 0 && !found.containsKey(Votes.key(commentId, email))) {
+            puts.add(Votes.voteEntity(commentId, email, vote));
+          }
+          comment.removeProperty(email);
+        }
+        puts.add(comment);
+        datastore.put(txn, puts);
+        txn.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if(attempt >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if(txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+  }
+}
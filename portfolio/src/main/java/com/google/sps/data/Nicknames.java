@@ -0,0 +1,90 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves a user's nickname from their "User" entity, which is keyed by email, with a direct
+ * key get instead of a query. Results are cached on this instance for a short time, and
+ * {@link #store} drops the cached entry so a user sees their own new nickname at once. Other
+ * instances pick it up when their entry expires, so anything that copies the nickname for good
+ * reads it with {@link #currentNickname} instead.
+ */
+public final class Nicknames {
+
+  public static final String KIND = "User";
+
+  private static final long TTL_MILLIS = 60 * 1000;
+  private static final int MAX_ENTRIES = 10000;
+
+  private static final Nicknames INSTANCE = new Nicknames();
+
+  // cached nicknames by email; a null nickname records that the user has no entity yet
+  private final Map<String, CachedNickname> nicknames = new ConcurrentHashMap<>();
+
+  private Nicknames() {}
+
+  public static Nicknames getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the nickname stored for a user, or null if they have never been stored.
+   * @param datastore The datastore holding "User" entities.
+   * @param email     The email of the user.
+   */
+  public String nickname(DatastoreService datastore, String email) {
+    CachedNickname cached = nicknames.get(email);
+    if(cached != null && System.currentTimeMillis() - cached.created < TTL_MILLIS) {
+      return cached.nickname;
+    }
+    return currentNickname(datastore, email);
+  }
+
+  /**
+   * Returns the nickname stored for a user straight from the datastore, refreshing the cached
+   * copy, or null if they have never been stored.
+   */
+  public String currentNickname(DatastoreService datastore, String email) {
+    String nickname = null;
+    try {
+      Entity user = datastore.get(KeyFactory.createKey(KIND, email));
+      nickname = user.getProperty("name").toString();
+    } catch (EntityNotFoundException e) {
+      // user has never posted or set a nickname
+    }
+    remember(email, nickname);
+    return nickname;
+  }
+
+  /** Stores a user's nickname and drops their cached one. */
+  public void store(DatastoreService datastore, String email, String nickname) {
+    Entity user = new Entity(KIND, email);
+    user.setProperty("name", nickname);
+    user.setProperty("email", email);
+    datastore.put(user);
+    nicknames.remove(email);
+  }
+
+  private void remember(String email, String nickname) {
+    if(nicknames.size() >= MAX_ENTRIES) {
+      nicknames.clear();
+    }
+    nicknames.put(email, new CachedNickname(nickname));
+  }
+
+  private static class CachedNickname {
+    final String nickname;
+    final long created;
+
+    CachedNickname(String nickname) {
+      this.nickname = nickname;
+      this.created = System.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+
+/**
+ * The storage the servlets use. Datastore and App Engine task queues are used unless the
+ * {@code portfolio.store} system property is "memory", in which case everything is kept in
+ * memory on this instance. Benchmarks and tests can also switch with {@link #useInMemory()}.
+ */
+public final class Stores {
+
+  public static final String BACKEND_PROPERTY = "portfolio.store";
+
+  private static volatile CommentStore comments;
+  private static volatile UserStore users;
+  private static volatile TranslationStore translations;
+  private static volatile TaskQueue tasks;
+
+  static {
+    if("memory".equals(System.getProperty(BACKEND_PROPERTY))) {
+      useInMemory();
+    } else {
+      useDatastore();
+    }
+  }
+
+  private Stores() {
+    // Disallow instances.
+  }
+
+  public static CommentStore comments() {
+    return comments;
+  }
+
+  public static UserStore users() {
+    return users;
+  }
+
+  public static TranslationStore translations() {
+    return translations;
+  }
+
+  public static TaskQueue tasks() {
+    return tasks;
+  }
+
+  /** Switches to datastore and App Engine task queues. */
+  public static synchronized void useDatastore() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    comments = 
+        new DatastoreCommentStore(datastore, DatastoreServiceFactory.getAsyncDatastoreService());
+    users = new DatastoreUserStore(datastore);
+    translations = new DatastoreTranslationStore(datastore);
+    tasks = new AppEngineTaskQueue();
+  }
+
+  /** Switches to new, empty in-memory stores. */
+  public static synchronized void useInMemory() {
+    comments = new InMemoryCommentStore();
+    users = new InMemoryUserStore();
+    translations = new InMemoryTranslationStore();
+    tasks = new InMemoryTaskQueue();
+  }
+}
@@ -0,0 +1,29 @@
+package com.google.sps.data;
+
+import java.util.Map;
+
+/**
+ * Background tasks that post back to a servlet. Pick an implementation through {@link Stores}.
+ */
+public interface TaskQueue {
+
+  /** Name of the queue used when a task doesn't need its own. */
+  String DEFAULT_QUEUE = "default";
+
+  /**
+   * Queues a POST to {@code url} with the given form parameters.
+   * @param queueName The queue to add the task to, one of those in queue.xml or the default.
+   */
+  void add(String queueName, String url, Map<String, String> params);
+
+  /**
+   * Queues a POST to {@code url} to run after a delay, unless a task with the same name was
+   * already added. Names stay taken for a while after their task has run, so they must be unique
+   * per piece of work, e.g. by including a time window.
+   * @param taskName    The name that deduplicates the task.
+   * @param delayMillis How long to wait before running the task.
+   * @return            False if a task with this name had already been added.
+   */
+  boolean addOnce(
+      String queueName, String taskName, long delayMillis, String url, Map<String, String> params);
+}
@@ -0,0 +1,22 @@
+package com.google.sps.data;
+
+import java.util.List;
+
+/**
+ * The translation calls the servlets make. The Cloud Translate API is the real implementation,
+ * and tests or benchmarks can swap in a local fake through {@link TranslationClient#setBackend}.
+ */
+public interface TranslationBackend {
+
+  /** Translates text into the target language, given as an ISO code. */
+  String translate(String text, String targetLanguage);
+
+  /**
+   * Translates several texts into the target language with one call.
+   * @return The translations, in the same order as {@code texts}.
+   */
+  List<String> translate(List<String> texts, String targetLanguage);
+
+  /** Detects the language of text and returns its ISO code. */
+  String detect(String text);
+}
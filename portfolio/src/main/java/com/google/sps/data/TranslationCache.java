@@ -0,0 +1,202 @@
+package com.google.sps.data;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A two-tier cache of translations keyed by a hash of the source text and the target language.
+ * The first tier is an LRU on this instance bounded by the approximate bytes it holds; the second
+ * is a {@link TranslationStore} shared by every instance. Only a miss in both
+ * tiers calls the translation backend. Translations of the same text never change, so entries
+ * don't expire.
+ */
+public final class TranslationCache {
+
+  /** Most texts sent to the translation backend in one call. */
+  public static final int MAX_TEXTS_PER_CALL = 100;
+
+  private static final long MAX_BYTES = 4 * 1024 * 1024;
+  // rough per-entry cost of the map node, key and value objects
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+  private static final TranslationCache INSTANCE = new TranslationCache();
+
+  private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes = 0;
+
+  private long memoryHits = 0;
+  private long storeHits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  private TranslationCache() {}
+
+  public static TranslationCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the translation of text into the target language, from the cache if possible.
+   * @param store   The store holding persisted translations.
+   * @param backend The backend called when neither tier has the translation.
+   * @param text    The text to translate.
+   * @param lang    The ISO code of the target language.
+   */
+  public String translate(
+      TranslationStore store, TranslationBackend backend, String text, String lang)
+  {
+    return translateAll(store, backend, Collections.singletonList(text), lang).get(0);
+  }
+
+  /**
+   * Translates several texts into the target language. Identical texts are translated once,
+   * persisted translations are read with one batched get, and whatever is left is sent to the
+   * backend in chunks of at most {@link #MAX_TEXTS_PER_CALL}.
+   * @return The translations, in the same order as {@code texts}.
+   */
+  public List<String> translateAll(
+      TranslationStore store, TranslationBackend backend, List<String> texts, String lang)
+  {
+    // cache key of every distinct text, in first-seen order
+    Map<String, String> keys = new LinkedHashMap<>();
+    for(String text: texts) {
+      if(!keys.containsKey(text)) {
+        keys.put(text, key(text, lang));
+      }
+    }
+
+    Map<String, String> translations = new HashMap<>();
+    List<String> remaining = new ArrayList<>();
+    synchronized(this) {
+      for(Map.Entry<String, String> entry: keys.entrySet()) {
+        String cached = entries.get(entry.getValue());
+        if(cached != null) {
+          memoryHits ++;
+          translations.put(entry.getKey(), cached);
+        } else {
+          remaining.add(entry.getKey());
+        }
+      }
+    }
+
+    if(!remaining.isEmpty()) {
+      List<String> storeKeys = new ArrayList<>();
+      for(String text: remaining) {
+        storeKeys.add(keys.get(text));
+      }
+      Map<String, String> found = store.getAll(storeKeys);
+      List<String> untranslated = new ArrayList<>();
+      synchronized(this) {
+        for(String text: remaining) {
+          String translated = found.get(keys.get(text));
+          if(translated == null) {
+            // not translated by any instance yet
+            untranslated.add(text);
+            continue;
+          }
+          storeHits ++;
+          translations.put(text, translated);
+          remember(keys.get(text), translated);
+        }
+      }
+
+      for(int start = 0; start < untranslated.size(); start += MAX_TEXTS_PER_CALL) {
+        List<String> chunk = 
+            untranslated.subList(start, Math.min(untranslated.size(), start + MAX_TEXTS_PER_CALL));
+        List<String> translated = backend.translate(chunk, lang);
+        Map<String, String> puts = new HashMap<>();
+        for(int i = 0; i < chunk.size(); i++) {
+          puts.put(keys.get(chunk.get(i)), translated.get(i));
+          translations.put(chunk.get(i), translated.get(i));
+        }
+        store.putAll(puts);
+        synchronized(this) {
+          for(String text: chunk) {
+            misses ++;
+            remember(keys.get(text), translations.get(text));
+          }
+        }
+      }
+    }
+
+    List<String> results = new ArrayList<>();
+    for(String text: texts) {
+      results.add(translations.get(text));
+    }
+    return results;
+  }
+
+  /** Returns a snapshot of the cache counters. */
+  public synchronized Stats stats() {
+    return new Stats(memoryHits, storeHits, misses, evictions, entries.size(), bytes);
+  }
+
+  /** Builds the cache key: the hex SHA-256 of the text, then the target language. */
+  static String key(String text, String lang) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      StringBuilder hex = new StringBuilder();
+      for(byte b: digest.digest(text.getBytes(StandardCharsets.UTF_8))) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.append(':').append(lang).toString();
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Adds an entry to the in-memory tier, evicting least recently used entries to fit. */
+  private void remember(String key, String translated) {
+    long size = size(key, translated);
+    if(size > MAX_BYTES) {
+      return;
+    }
+    String previous = entries.put(key, translated);
+    if(previous != null) {
+      bytes -= size(key, previous);
+    }
+    bytes += size;
+    Iterator<Map.Entry<String, String>> itr = entries.entrySet().iterator();
+    while(bytes > MAX_BYTES && itr.hasNext()) {
+      Map.Entry<String, String> eldest = itr.next();
+      bytes -= size(eldest.getKey(), eldest.getValue());
+      itr.remove();
+      evictions ++;
+    }
+  }
+
+  private static long size(String key, String translated) {
+    // strings hold two bytes per char
+    return 2L * (key.length() + translated.length()) + ENTRY_OVERHEAD_BYTES;
+  }
+
+  /** A snapshot of the cache counters, for JSON conversion. */
+  public static final class Stats {
+    private final long memoryHits;
+    private final long storeHits;
+    private final long misses;
+    private final long evictions;
+    private final int entries;
+    private final long bytes;
+
+    private Stats(
+        long memoryHits, long storeHits, long misses, long evictions, int entries, long bytes)
+    {
+      this.memoryHits = memoryHits;
+      this.storeHits = storeHits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.entries = entries;
+      this.bytes = bytes;
+    }
+  }
+}
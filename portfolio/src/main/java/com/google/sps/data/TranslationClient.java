@@ -0,0 +1,127 @@
+package com.google.sps.data;
+
+import com.google.cloud.translate.TranslateOptions;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * The one translation client shared by every servlet on this instance. Building a Translate
+ * service sets up credentials and an HTTP transport, so it is done once, lazily (or eagerly
+ * through {@link #warmUp()} from a servlet's init), and reused by every request. Counts of
+ * client creations, calls, failures and total call time are kept for monitoring.
+ */
+public final class TranslationClient implements TranslationBackend {
+
+  private static final Logger LOGGER = Logger.getLogger(TranslationClient.class.getName());
+  private static final TranslationClient INSTANCE = new TranslationClient();
+
+  private volatile TranslationBackend backend;
+
+  private final AtomicLong clientsCreated = new AtomicLong();
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong callNanos = new AtomicLong();
+
+  private TranslationClient() {}
+
+  public static TranslationClient getInstance() {
+    return INSTANCE;
+  }
+
+  /** Replaces the backend, e.g. with a local fake for tests and benchmarks. */
+  public void setBackend(TranslationBackend replacement) {
+    backend = replacement;
+  }
+
+  /** Creates the shared client ahead of the first request that needs it. */
+  public void warmUp() {
+    backend();
+  }
+
+  /** Translates text into the target language through the shared backend. */
+  @Override
+  public String translate(String text, String targetLanguage) {
+    long start = System.nanoTime();
+    try {
+      return backend().translate(text, targetLanguage);
+    } catch (RuntimeException e) {
+      failures.incrementAndGet();
+      throw e;
+    } finally {
+      record(start);
+    }
+  }
+
+  /** Translates several texts with one call to the shared backend. */
+  @Override
+  public List<String> translate(List<String> texts, String targetLanguage) {
+    long start = System.nanoTime();
+    try {
+      return backend().translate(texts, targetLanguage);
+    } catch (RuntimeException e) {
+      failures.incrementAndGet();
+      throw e;
+    } finally {
+      record(start);
+    }
+  }
+
+  /** Detects the language of text through the shared backend. */
+  @Override
+  public String detect(String text) {
+    long start = System.nanoTime();
+    try {
+      return backend().detect(text);
+    } catch (RuntimeException e) {
+      failures.incrementAndGet();
+      throw e;
+    } finally {
+      record(start);
+    }
+  }
+
+  /** Returns a snapshot of the client metrics. */
+  public Stats stats() {
+    return new Stats(clientsCreated.get(), calls.get(), failures.get(), callNanos.get());
+  }
+
+  /** Returns the shared backend, creating the Cloud Translate client on first use. */
+  private TranslationBackend backend() {
+    TranslationBackend current = backend;
+    if(current == null) {
+      synchronized(this) {
+        current = backend;
+        if(current == null) {
+          long start = System.nanoTime();
+          current = new CloudTranslationBackend(TranslateOptions.getDefaultInstance().getService());
+          backend = current;
+          clientsCreated.incrementAndGet();
+          LOGGER.info("created translate client in " + (System.nanoTime() - start) / 1000000 + "ms");
+        }
+      }
+    }
+    return current;
+  }
+
+  private void record(long start) {
+    calls.incrementAndGet();
+    callNanos.addAndGet(System.nanoTime() - start);
+  }
+
+  /** A snapshot of the client metrics, for JSON conversion. */
+  public static final class Stats {
+    private final long clientsCreated;
+    private final long calls;
+    private final long failures;
+    private final double averageCallMillis;
+
+    private Stats(long clientsCreated, long calls, long failures, long callNanos) {
+      this.clientsCreated = clientsCreated;
+      this.calls = calls;
+      this.failures = failures;
+      this.averageCallMillis = (calls == 0) ? 0 : callNanos / 1e6 / calls;
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.google.sps.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent storage behind the {@link TranslationCache}, keyed by the cache's
+ * (text hash, language) keys. Pick an implementation through {@link Stores}.
+ */
+public interface TranslationStore {
+
+  /** Returns the stored translations for the keys that have one. */
+  Map<String, String> getAll(List<String> keys);
+
+  /** Stores translations by key. */
+  void putAll(Map<String, String> translations);
+}
@@ -0,0 +1,28 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+
+/**
+ * The {@link UserService} the servlets ask who is logged in. It is App Engine's own unless
+ * benchmarks or tests replace it with a fake through {@link #set}, since the real one only works
+ * inside an App Engine request.
+ */
+public final class UserServices {
+
+  private static volatile UserService replacement;
+
+  private UserServices() {
+    // Disallow instances.
+  }
+
+  public static UserService get() {
+    UserService current = replacement;
+    return (current != null) ? current : UserServiceFactory.getUserService();
+  }
+
+  /** Replaces the user service, or restores App Engine's when given null. */
+  public static void set(UserService userService) {
+    replacement = userService;
+  }
+}
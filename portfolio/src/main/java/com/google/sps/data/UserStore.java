@@ -0,0 +1,18 @@
+package com.google.sps.data;
+
+/** Storage of user nicknames. Pick an implementation through {@link Stores}. */
+public interface UserStore {
+
+  /** Returns the nickname stored for a user, or null if they have never been stored. */
+  String nickname(String email);
+
+  /**
+   * Returns the nickname stored for a user, read past any cache, or null if they have never been
+   * stored. Use it when the name is copied somewhere a later rename might not reach, such as a
+   * new comment.
+   */
+  String currentNickname(String email);
+
+  /** Stores a user's nickname. */
+  void storeNickname(String email, String nickname);
+}
@@ -0,0 +1,167 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A sharded upvote counter for each comment. Every vote changes one randomly picked shard, so
+ * concurrent votes on a popular comment rarely touch the same entity. The total is the sum of
+ * the shards plus the comment's "upvoteBase", the count it had before counters were sharded.
+ *
+ * <p>The comment's "upvotes" property is still needed to sort comments by score. Votes never
+ * write it; {@link #syncTotal} copies the total over from a throttled background task, so a
+ * popular comment is written at most once per sync interval however many votes it gets.
+ */
+public final class VoteCounter {
+
+  public static final String KIND = "UpvoteShard";
+  public static final String BASE_PROPERTY = "upvoteBase";
+
+  private static final int NUM_SHARDS = 10;
+  private static final int MAX_SYNC_RETRIES = 3;
+  // comments summed per batched get, keeping each get under the datastore's 1000 key limit
+  private static final int MAX_COMMENTS_PER_GET = 1000 / (NUM_SHARDS + 1);
+
+  private static final Logger LOGGER = Logger.getLogger(VoteCounter.class.getName());
+  private static final Random RANDOM = new Random();
+
+  private VoteCounter() {
+    // Disallow instances.
+  }
+
+  /** Returns the keys of every shard of a comment's counter. */
+  public static List<Key> shardKeys(long commentId) {
+    List<Key> keys = new ArrayList<>();
+    for(int i = 0; i < NUM_SHARDS; i++) {
+      keys.add(KeyFactory.createKey(KIND, commentId + ":" + i));
+    }
+    return keys;
+  }
+
+  /** Returns the key of a randomly picked shard of a comment's counter. */
+  public static Key randomShardKey(long commentId) {
+    return KeyFactory.createKey(KIND, commentId + ":" + RANDOM.nextInt(NUM_SHARDS));
+  }
+
+  /** Creates a shard for a comment's counter with a count of zero. */
+  public static Entity newShard(Key shardKey, long commentId) {
+    Entity shard = new Entity(shardKey);
+    shard.setProperty("comment", commentId);
+    shard.setUnindexedProperty("count", 0L);
+    return shard;
+  }
+
+  /** Adds {@code delta} to the count of an already fetched or newly created shard. */
+  public static void applyDelta(Entity shard, long delta) {
+    long count = ((Number) shard.getProperty("count")).longValue();
+    shard.setUnindexedProperty("count", count + delta);
+  }
+
+  /**
+   * Returns the current upvote totals of some comments, summing their shards with batched gets.
+   * Nothing is written, so reading totals never contends with votes.
+   * @return The totals by comment id. Comments that don't exist are left out.
+   */
+  public static Map<Long, Long> totals(DatastoreService datastore, List<Long> commentIds) {
+    Map<Long, Long> totals = new LinkedHashMap<>();
+    for(int start = 0; start < commentIds.size(); start += MAX_COMMENTS_PER_GET) {
+      int end = Math.min(start + MAX_COMMENTS_PER_GET, commentIds.size());
+      List<Key> keys = new ArrayList<>();
+      for(long id: commentIds.subList(start, end)) {
+        keys.add(KeyFactory.createKey("Comment", id));
+        keys.addAll(shardKeys(id));
+      }
+      Map<Key, Entity> found = datastore.get(keys);
+      for(long id: commentIds.subList(start, end)) {
+        Entity comment = found.get(KeyFactory.createKey("Comment", id));
+        if(comment == null) {
+          continue;
+        }
+        long total = base(comment);
+        for(Key shardKey: shardKeys(id)) {
+          Entity shard = found.get(shardKey);
+          if(shard != null) {
+            total += ((Number) shard.getProperty("count")).longValue();
+          }
+        }
+        totals.put(id, total);
+      }
+    }
+    return totals;
+  }
+
+  /**
+   * Copies the current total of a comment's counter into its "upvotes" property. This runs in a
+   * transaction on the comment, so when several syncs race the one that reads the newest shard
+   * counts is the one that sticks. It is best effort: if it keeps colliding, the next scheduled
+   * sync fixes it.
+   */
+  public static void syncTotal(DatastoreService datastore, long commentId) {
+    Key commentKey = KeyFactory.createKey("Comment", commentId);
+    for(int attempt = 0; attempt <= MAX_SYNC_RETRIES; attempt ++) {
+      Transaction txn = datastore.beginTransaction();
+      try {
+        Entity comment = datastore.get(txn, commentKey);
+        if(!comment.hasProperty(BASE_PROPERTY)) {
+          // the comment predates sharded counters; its count so far becomes the base
+          comment.setUnindexedProperty(BASE_PROPERTY, comment.getProperty("upvotes"));
+        }
+        long total = sum(datastore, comment);
+        comment.setProperty("upvotes", total);
+        datastore.put(txn, comment);
+        txn.commit();
+        return;
+      } catch (EntityNotFoundException e) {
+        // comment was deleted, nothing to sync
+        return;
+      } catch (ConcurrentModificationException e) {
+        LOGGER.log(Level.FINE, "upvote sync collided for comment id " + commentId);
+      } finally {
+        if(txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+    LOGGER.warning("gave up syncing upvotes for comment id " + commentId);
+  }
+
+  /** Deletes every shard of a comment's counter. */
+  public static void deleteShards(DatastoreService datastore, long commentId) {
+    datastore.delete(shardKeys(commentId));
+  }
+
+  /**
+   * Returns the count a comment had before counters were sharded. Until its first sync that is
+   * still held in "upvotes".
+   */
+  private static long base(Entity comment) {
+    Object base = comment.hasProperty(BASE_PROPERTY) 
+        ? comment.getProperty(BASE_PROPERTY) : comment.getProperty("upvotes");
+    return (base instanceof Number) ? ((Number) base).longValue() : 0;
+  }
+
+  /** Sums the base count of a comment with its shards, reading the shards outside any transaction. */
+  private static long sum(DatastoreService datastore, Entity comment) {
+    long total = base(comment);
+    // an explicit null transaction, since calls without one join the caller's current transaction
+    Map<Key, Entity> shards = 
+        datastore.get((Transaction) null, shardKeys(comment.getKey().getId()));
+    for(Entity shard: shards.values()) {
+      total += ((Number) shard.getProperty("count")).longValue();
+    }
+    return total;
+  }
+}
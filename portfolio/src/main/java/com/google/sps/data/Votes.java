@@ -0,0 +1,232 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores each user's vote on a comment as its own small "Vote" entity keyed by (comment, user),
+ * so voting never grows the comment entity and reading comments never carries voter lists.
+ * Upvote totals are kept by {@link VoteCounter}.
+ */
+public final class Votes {
+
+  public static final String KIND = "Vote";
+
+  // how many times a vote is retried when it collides with a concurrent vote
+  private static final int MAX_RETRIES = 5;
+  // each comment in a transaction touches its vote, a counter shard and maybe the comment itself,
+  // and a cross-group transaction can span at most 25 entity groups
+  private static final int MAX_COMMENTS_PER_TRANSACTION = 8;
+  // the Datastore rejects batch gets of more than 1000 keys
+  private static final int MAX_KEYS_PER_GET = 1000;
+
+  private Votes() {
+    // Disallow instances.
+  }
+
+  /** Returns the key of a user's vote on a comment. */
+  public static Key key(long commentId, String email) {
+    return KeyFactory.createKey(KIND, commentId + ":" + email);
+  }
+
+  /**
+   * Applies a user's vote to a comment. Voting the same way twice withdraws the vote, and voting
+   * the other way reverses it. The vote and one shard of the comment's {@link VoteCounter} are
+   * updated together in one transaction, and retried if a concurrent vote touched either first.
+   * The comment's sortable total is left for {@link VoteCounter#syncTotal} to refresh later.
+   * @param datastore The datastore to update.
+   * @param commentId The id of the comment being voted on.
+   * @param email     The email of the voting user.
+   * @param vote      The vote, 1 for an upvote or -1 for a downvote.
+   * @return          The user's vote after the update, 0 if it was withdrawn.
+   * @throws EntityNotFoundException if the comment doesn't exist.
+   */
+  public static int applyVote(DatastoreService datastore, long commentId, String email, int vote)
+      throws EntityNotFoundException
+  {
+    Map<Long, Integer> result = applyVotes(
+        datastore, email, Collections.singletonMap(commentId, Collections.singletonList(vote)));
+    if(!result.containsKey(commentId)) {
+      throw new EntityNotFoundException(KeyFactory.createKey("Comment", commentId));
+    }
+    return result.get(commentId);
+  }
+
+  /**
+   * Applies a batch of one user's votes. The votes on each comment are coalesced in order, so
+   * repeated toggles cost nothing beyond the final state, and each transaction covers several
+   * comments with one batched get and one batched put.
+   * @param datastore The datastore to update.
+   * @param email     The email of the voting user.
+   * @param votes     The votes to apply on each comment id, in the order they were cast.
+   * @return          The user's final vote on each comment, 0 if withdrawn. Comments that
+   *                  don't exist are left out.
+   */
+  public static Map<Long, Integer> applyVotes(
+      DatastoreService datastore, String email, Map<Long, List<Integer>> votes)
+  {
+    // the comments themselves stay out of the transactions so votes don't contend on them
+    List<Key> commentKeys = new ArrayList<>();
+    for(long id: votes.keySet()) {
+      commentKeys.add(KeyFactory.createKey("Comment", id));
+    }
+    Map<Key, Entity> comments = datastore.get(commentKeys);
+    List<Long> ids = new ArrayList<>();
+    for(Key key: commentKeys) {
+      if(comments.containsKey(key)) {
+        ids.add(key.getId());
+      }
+    }
+
+    Map<Long, Integer> results = new LinkedHashMap<>();
+    for(int start = 0; start < ids.size(); start += MAX_COMMENTS_PER_TRANSACTION) {
+      int end = Math.min(ids.size(), start + MAX_COMMENTS_PER_TRANSACTION);
+      results.putAll(applyChunk(datastore, email, ids.subList(start, end), votes, comments));
+    }
+    return results;
+  }
+
+  /** Applies the votes on a few existing comments in one transaction, retrying on collisions. */
+  private static Map<Long, Integer> applyChunk(
+      DatastoreService datastore, 
+      String email, 
+      List<Long> ids, 
+      Map<Long, List<Integer>> votes, 
+      Map<Key, Entity> comments)
+  {
+    for(int attempt = 0; ; attempt ++) {
+      Transaction txn = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        // fetch every vote, a random counter shard and any comment still holding an old-style vote
+        List<Key> keys = new ArrayList<>();
+        Map<Long, Key> shardKeys = new HashMap<>();
+        for(long id: ids) {
+          keys.add(key(id, email));
+          Key shardKey = VoteCounter.randomShardKey(id);
+          shardKeys.put(id, shardKey);
+          keys.add(shardKey);
+          Key commentKey = KeyFactory.createKey("Comment", id);
+          if(comments.get(commentKey).hasProperty(email)) {
+            keys.add(commentKey);
+          }
+        }
+        Map<Key, Entity> found = datastore.get(txn, keys);
+
+        Map<Long, Integer> results = new LinkedHashMap<>();
+        List<Entity> puts = new ArrayList<>();
+        List<Key> deletes = new ArrayList<>();
+        for(long id: ids) {
+          Key voteKey = key(id, email);
+          int currentVote = 0;
+          if(found.containsKey(voteKey)) {
+            currentVote = ((Number) found.get(voteKey).getProperty("vote")).intValue();
+          }
+          // votes used to be stored as a property named by the voter's email; move them over
+          Entity legacy = found.get(KeyFactory.createKey("Comment", id));
+          if(legacy != null && legacy.hasProperty(email)) {
+            if(currentVote == 0) {
+              currentVote = Integer.parseInt(legacy.getProperty(email).toString());
+            }
+            legacy.removeProperty(email);
+            puts.add(legacy);
+          }
+
+          int newVote = currentVote;
+          for(int vote: votes.get(id)) {
+            newVote = (vote == newVote) ? 0 : vote;
+          }
+          results.put(id, newVote);
+          if(newVote == currentVote) {
+            continue;
+          }
+          if(newVote == 0) {
+            deletes.add(voteKey);
+          } else {
+            puts.add(voteEntity(id, email, newVote));
+          }
+          Key shardKey = shardKeys.get(id);
+          Entity shard = found.containsKey(shardKey) 
+              ? found.get(shardKey) : VoteCounter.newShard(shardKey, id);
+          VoteCounter.applyDelta(shard, newVote - currentVote);
+          puts.add(shard);
+        }
+
+        if(!puts.isEmpty()) {
+          datastore.put(txn, puts);
+        }
+        if(!deletes.isEmpty()) {
+          datastore.delete(txn, deletes);
+        }
+        txn.commit();
+        return results;
+      } catch (ConcurrentModificationException e) {
+        if(attempt >= MAX_RETRIES) {
+          throw e;
+        }
+      } finally {
+        if(txn.isActive()) {
+          txn.rollback();
+        }
+      }
+    }
+  }
+
+  /** Builds the entity recording a user's (non-zero) vote on a comment. */
+  public static Entity voteEntity(long commentId, String email, int vote) {
+    Entity voteEntity = new Entity(key(commentId, email));
+    voteEntity.setProperty("comment", commentId);
+    voteEntity.setProperty("user", email);
+    voteEntity.setUnindexedProperty("vote", vote);
+    return voteEntity;
+  }
+
+  /**
+   * Looks up a user's votes on a set of comments with batched gets of at most
+   * {@link #MAX_KEYS_PER_GET} keys each.
+   * @return A map from comment id to vote, holding only the comments the user voted on.
+   */
+  public static Map<Long, Integer> userVotes(
+      DatastoreService datastore, String email, List<Long> commentIds)
+  {
+    Map<Long, Integer> votes = new HashMap<>();
+    for(int start = 0; start < commentIds.size(); start += MAX_KEYS_PER_GET) {
+      int end = Math.min(start + MAX_KEYS_PER_GET, commentIds.size());
+      List<Key> keys = new ArrayList<>();
+      for(long id: commentIds.subList(start, end)) {
+        keys.add(key(id, email));
+      }
+      for(Entity e: datastore.get(keys).values()) {
+        long commentId = ((Number) e.getProperty("comment")).longValue();
+        votes.put(commentId, ((Number) e.getProperty("vote")).intValue());
+      }
+    }
+    return votes;
+  }
+
+  /** Deletes every vote on a comment. */
+  public static void deleteVotes(DatastoreService datastore, long commentId) {
+    Query query =
+        new Query(KIND)
+            .setFilter(new Query.FilterPredicate("comment", Query.FilterOperator.EQUAL, commentId))
+            .setKeysOnly();
+    List<Key> keys = new ArrayList<>();
+    for(Entity e: datastore.prepare(query).asIterable()) {
+      keys.add(e.getKey());
+    }
+    datastore.delete(keys);
+  }
+}
@@ -1,61 +1,90 @@
 package com.google.sps.servlets;
 
 import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import java.io.IOException;
+import java.io.Serializable;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 import com.google.gson.Gson;
+import com.google.sps.data.Stores;
+import com.google.sps.data.UserServices;
 
 @WebServlet("/auth")
 public class AuthServlet extends HttpServlet {
 
   private static final Logger LOGGER = Logger.getLogger(AuthServlet.class.getName());
+  // session attribute holding the last login info sent to this session
+  private static final String SESSION_ATTRIBUTE = "login";
 
+  /**
+   * Responds with the login info of the current user, with an ETag so a browser that already has
+   * it gets 304 Not Modified. For a logged-in user the JSON is also kept in the session, so repeat
+   * visits are answered without recomputing URLs. Anonymous visitors get no session, since
+   * storing one costs a datastore write and their response is cheap to rebuild.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    LoginObject info;
-
-    UserService userService = UserServiceFactory.getUserService();
-    if (userService.isUserLoggedIn()) {
-      String userEmail = userService.getCurrentUser().getEmail();
-      String logoutUrl = userService.createLogoutURL("/");
-
-      DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-      Query query =
-        new Query("User")
-            .setFilter(new Query.FilterPredicate("email", Query.FilterOperator.EQUAL, userEmail));
-      String userNickname = userEmail;
-      PreparedQuery results = datastore.prepare(query);
-      Entity entity = results.asSingleEntity();
-      if (entity != null) {
-        userNickname = entity.getProperty("name").toString();
-      }
-      info = new LoginObject(logoutUrl, userEmail, userNickname);
-      LOGGER.info("currently logged in to account " + userEmail + ". Created logout URL " + logoutUrl);
-    } else {
+    // let the browser keep the response, but make it check back every time
+    response.setHeader("Cache-Control", "private, no-cache");
+
+    UserService userService = UserServices.get();
+    if(!userService.isUserLoggedIn()) {
       String loginUrl = userService.createLoginURL("/");
-      info = new LoginObject(loginUrl, null, null);
+      CachedLogin login = new CachedLogin(
+          null, null, new Gson().toJson(new LoginObject(loginUrl, null, null)));
       LOGGER.info("not currently logged in. Created login URL " + loginUrl);
+      send(request, response, login);
+      return;
+    }
+
+    String currentEmail = userService.getCurrentUser().getEmail();
+    String userNickname = Stores.users().nickname(currentEmail);
+    if (userNickname == null) {
+      userNickname = currentEmail;
+    }
+    // only valid while the same user is logged in under the same nickname, so a rename from
+    // another session shows up as soon as the nickname lookup sees it
+    HttpSession session = request.getSession(false);
+    Object attribute = (session == null) ? null : session.getAttribute(SESSION_ATTRIBUTE);
+    if(attribute instanceof CachedLogin 
+        && ((CachedLogin) attribute).isFor(currentEmail, userNickname)) 
+    {
+      send(request, response, (CachedLogin) attribute);
+      return;
+    }
+
+    String logoutUrl = userService.createLogoutURL("/");
+    LoginObject info = new LoginObject(logoutUrl, currentEmail, userNickname);
+    LOGGER.info(
+        "currently logged in to account " + currentEmail + ". Created logout URL " + logoutUrl);
+    CachedLogin login = new CachedLogin(currentEmail, userNickname, new Gson().toJson(info));
+    // the first session for this visitor is only created now that they have logged in
+    request.getSession(true).setAttribute(SESSION_ATTRIBUTE, login);
+    send(request, response, login);
+  }
+
+  /** Writes login info, or just 304 Not Modified if the browser's copy has the same ETag. */
+  private void send(HttpServletRequest request, HttpServletResponse response, CachedLogin login) 
+      throws IOException 
+  {
+    response.setHeader("ETag", login.etag);
+    if(login.etag.equals(request.getHeader("If-None-Match"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    } else {
+      response.getWriter().println(login.json);
     }
-    response.getWriter().println(gson.toJson(info));
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    UserService userService = UserServiceFactory.getUserService();
+    UserService userService = UserServices.get();
     if(!userService.isUserLoggedIn()) {
       LOGGER.info("User not currently logged in, returning.");
       return;
@@ -63,26 +92,46 @@ public class AuthServlet extends HttpServlet {
 
     String email = userService.getCurrentUser().getEmail();
     String nickname = request.getParameter("nickname");
-    // update user info in datastore
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Entity userInfo = new Entity("User", email);
-    userInfo.setProperty("name", nickname);
-    userInfo.setProperty("email", email);
-    datastore.put(userInfo);
-
-    // update nickname for all of user's comments
-    Query query =
-        new Query("Comment")
-            .setFilter(new Query.FilterPredicate("author", Query.FilterOperator.EQUAL, email));
-    PreparedQuery results = datastore.prepare(query);
-    for(Entity e: results.asIterable()) {
-      e.setProperty("name", nickname);
-      datastore.put(e);
+    if(nickname == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "no nickname provided");
+      return;
+    }
+    // update user info in storage
+    Stores.users().storeNickname(email, nickname);
+    // the cached login info holds the old nickname
+    HttpSession session = request.getSession(false);
+    if(session != null) {
+      session.removeAttribute(SESSION_ATTRIBUTE);
     }
+
+    // the user's comments are updated in the background so renaming doesn't scale with them
+    RenameServlet.enqueue(email, nickname, null);
     LOGGER.info("Updated nickname to " + nickname + " for user " + email);
     response.sendRedirect("/index.html");
   }
 
+  /** Login info JSON already sent to a session, with the user and nickname it was computed for. */
+  private static class CachedLogin implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    // email and nickname of the logged-in user, or null if nobody was logged in
+    final String email;
+    final String nickname;
+    final String json;
+    final String etag;
+
+    CachedLogin(String email, String nickname, String json) {
+      this.email = email;
+      this.nickname = nickname;
+      this.json = json;
+      this.etag = "\"" + Integer.toHexString(json.hashCode()) + "\"";
+    }
+
+    boolean isFor(String currentEmail, String currentNickname) {
+      return email != null && email.equals(currentEmail) && nickname.equals(currentNickname);
+    }
+  }
+
   /* nested class to help with JSON conversion */
   private static class LoginObject {
     boolean loggedIn;
@@ -0,0 +1,62 @@
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.Stores;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Task queue handler that adds author tokens to comments written before they existed. Until it
+ * finishes, listings filtered by author fall back to checking each comment themselves.
+ */
+@WebServlet("/backfill-author-tokens")
+public class AuthorTokenServlet extends HttpServlet {
+
+  private static final Logger LOGGER = Logger.getLogger(AuthorTokenServlet.class.getName());
+  private static final String QUEUE_NAME = "migrations";
+  // how long one task spends backfilling before handing the rest to the next task
+  private static final long TIME_BUDGET_MILLIS = 20 * 1000;
+  // instances starting within the same window share a single backfill
+  private static final long START_WINDOW_MILLIS = 10 * 60 * 1000;
+
+  /** Starts the backfill unless it has finished or was started recently. */
+  public static void startIfNeeded() {
+    if(Stores.comments().authorTokensReady()) {
+      return;
+    }
+    long window = System.currentTimeMillis() / START_WINDOW_MILLIS;
+    Stores.tasks().addOnce(QUEUE_NAME, "author-tokens-" + window, 0,
+        "/backfill-author-tokens", Collections.<String, String>emptyMap());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from outside requests, so only task queue tasks have it
+    if(request.getHeader("X-AppEngine-QueueName") == null) {
+      LOGGER.log(Level.WARNING, "author token backfill requested outside the task queue");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    String cursor = Stores.comments().backfillAuthorTokens(
+        request.getParameter("cursor"), System.currentTimeMillis() + TIME_BUDGET_MILLIS);
+    if(cursor != null) {
+      Map<String, String> params = Collections.singletonMap("cursor", cursor);
+      Stores.tasks().add(QUEUE_NAME, "/backfill-author-tokens", params);
+      LOGGER.info("added author tokens to some comments, continuing in background");
+    } else {
+      // filtered listings switch to the indexed query, so drop pages built the old way
+      CommentCache.getInstance().invalidateAll();
+      LOGGER.info("every comment has author tokens");
+    }
+  }
+}
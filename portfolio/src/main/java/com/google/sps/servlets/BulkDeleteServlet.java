@@ -0,0 +1,77 @@
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.sps.data.BulkDelete;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.Stores;
+import com.google.sps.data.TaskQueue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Task queue handler that resumes a bulk delete from the "kind" and "cursor" where the previous
+ * request or task ran out of time.
+ */
+@WebServlet("/bulk-delete")
+public class BulkDeleteServlet extends HttpServlet {
+
+  private static final Logger LOGGER = Logger.getLogger(BulkDeleteServlet.class.getName());
+  // how long one request spends deleting before handing the rest to a background task
+  private static final long TIME_BUDGET_MILLIS = 20 * 1000;
+
+  /**
+   * Deletes comments until done or the time budget runs out, then queues a task to continue.
+   * @param kind   The kind to resume from, or null to start from the beginning.
+   * @param cursor The cursor to resume from within that kind, or null.
+   * @return       The progress of the bulk delete.
+   * @throws IllegalArgumentException if the kind or cursor is invalid.
+   */
+  static BulkDelete.Progress deleteAll(String kind, String cursor) throws IOException {
+    BulkDelete.Progress progress;
+    try {
+      progress = Stores.comments().deleteAll(
+          kind, cursor, System.currentTimeMillis() + TIME_BUDGET_MILLIS);
+    } catch (InterruptedException | ExecutionException e) {
+      LOGGER.log(Level.WARNING, "bulk delete failed", e);
+      throw new IOException("bulk delete failed", e);
+    }
+    CommentCache.getInstance().invalidateAll();
+
+    if(progress.isDone()) {
+      LOGGER.info("deleted all comments from the database");
+    } else {
+      Map<String, String> params = new LinkedHashMap<>();
+      params.put("kind", progress.getKind());
+      params.put("cursor", progress.getCursor());
+      Stores.tasks().add(TaskQueue.DEFAULT_QUEUE, "/bulk-delete", params);
+      LOGGER.info(
+          "deleted " + progress.getDeleted() + " entities so far, continuing in background");
+    }
+    return progress;
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from outside requests, so only task queue tasks have it
+    if(request.getHeader("X-AppEngine-QueueName") == null) {
+      LOGGER.log(Level.WARNING, "bulk delete resumed outside the task queue");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    try {
+      deleteAll(request.getParameter("kind"), request.getParameter("cursor"));
+    } catch (IllegalArgumentException e) {
+      // retrying a task with bad parameters can't succeed, so don't fail it
+      LOGGER.log(Level.WARNING, "invalid bulk delete parameters", e);
+    }
+  }
+}
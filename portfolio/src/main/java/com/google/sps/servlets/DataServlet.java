@@ -14,15 +14,16 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentQuery;
+import com.google.sps.data.CommentStore;
+import com.google.sps.data.Stores;
+import com.google.sps.data.UserServices;
+import com.google.sps.data.UserStore;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,11 +32,6 @@ import java.util.logging.Handler;
 import java.util.logging.Formatter;
 import java.util.logging.SimpleFormatter;
 
-import com.google.cloud.translate.Translate;
-import com.google.cloud.translate.TranslateOptions;
-import com.google.cloud.translate.Translation;
-import com.google.cloud.translate.Detection;
-
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -43,104 +39,174 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Iterator;
+import java.util.Map;
 
 @WebServlet("/data")
 public class DataServlet extends HttpServlet {
 
-  // used for json conversion when extracting Entities from datastore query
-  private List<Entity> database; 
-  // upper limit of how many results to return
-  private int limit; 
-  // sort direction - ascending or descending
-  private boolean descending; 
-  // sort criteria
-  private String sortParam; 
-
   private static final Logger LOGGER = Logger.getLogger(DataServlet.class.getName());
+  // largest batch of comments fetched from storage at once, to bound memory for big limits
+  private static final int MAX_CHUNK_SIZE = 100;
 
   @Override
   public void init() {
-    database = new ArrayList<>();
-    limit = 10;
-    sortParam = "timestamp";
-    descending = true;
+    // comments from before author tokens need them before filtered listings can use the index
+    AuthorTokenServlet.startIfNeeded();
+    // votes still stored on comments are otherwise only moved when their voter votes again
+    LegacyVoteServlet.startIfNeeded();
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-
-    // update query parameters
-    String paramLimit = request.getParameter("limit");
-    String paramSort = request.getParameter("sort");
-    String paramChoice = request.getParameter("sortBy");
-    String auth = request.getParameter("auth");
-    if(paramLimit != null) {
-      limit = Integer.parseInt(paramLimit);
+    CommentStore store = Stores.comments();
+
+    // all query settings are request-scoped so concurrent requests can't see each other's
+    CommentQuery commentQuery;
+    try {
+      commentQuery = CommentQuery.fromParameters(
+          request.getParameter("limit"),
+          request.getParameter("sort"),
+          request.getParameter("sortBy"),
+          request.getParameter("auth"),
+          request.getParameter("cursor"),
+          request.getParameter("lang"));
+    } catch (IllegalArgumentException e) {
+      LOGGER.warning("invalid query parameters: " + e.getMessage());
+      throw new IOException(e.getMessage());
     }
-    if(paramSort != null) {
-      if(paramSort.equals("descending")) {
-        descending = true;
-      }
-      else if (paramSort.equals("ascending")) {
-        descending = false;
-      } else {
-        LOGGER.warning("invalid parameter sort direction");
-        throw new IOException("invalid sort direction");
+    int limit = commentQuery.getLimit();
+    response.setContentType("application/json;");
+
+    // serve first pages of common listings straight from memory
+    CommentCache cache = CommentCache.getInstance();
+    int bucketLimit = CommentCache.bucketLimit(commentQuery);
+    String cacheKey = null;
+    if(bucketLimit >= 0) {
+      cacheKey = CommentCache.key(commentQuery);
+      CommentCache.Page cached = cache.get(cacheKey);
+      if(cached != null) {
+        LOGGER.info("served from cache " + commentQuery);
+        writeCachedPage(response, cached, limit, store);
+        return;
       }
     }
-    if(paramChoice != null) {
-      sortParam = paramChoice;
+    long generation = cache.generation();
+    int fetchLimit = (bucketLimit >= 0) ? bucketLimit : limit;
+
+    // querying stored comments, resuming from the previous page's continuation token if any
+    int chunkSize = Math.max(Math.min(fetchLimit, MAX_CHUNK_SIZE), 1);
+    CommentStore.Listing itr;
+    try {
+      itr = store.list(commentQuery, chunkSize);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warning("invalid parameter cursor " + commentQuery.getCursor());
+      throw new IOException("invalid cursor");
     }
 
-    // querying datastore elements
-    Query query = new Query("Comment");
-    if(descending) {
-      query.addSort(sortParam, SortDirection.DESCENDING);
-    } else {
-      query.addSort(sortParam, SortDirection.ASCENDING);
-    }
-    PreparedQuery results = datastore.prepare(query);
-
-    database = new ArrayList<>();
-    Iterator<Entity> itr = results.asIterable().iterator();
-    if(auth != null && auth.length() > 0) {
-      // add author filter to search
-      int count = 0;
-      while(count < limit && itr.hasNext()) {
-        Entity e = itr.next();
-        // check against nickname first
-        String eAuth = e.getProperty("name").toString();
-        eAuth = eAuth.replaceAll("\\s", "");
-        if(eAuth.equalsIgnoreCase(auth)) {
-          count ++;
-          database.add(e);
-        } else {
-          // if not a match, also check against email
-          String email = e.getProperty("author").toString();
-          email = email.replaceAll("\\s", "");
-          if(email.toLowerCase().contains(auth.toLowerCase())) {
-            count ++;
-            database.add(e);
+    Gson gson = new Gson();
+    if(cacheKey == null) {
+      // uncached pages can be arbitrarily large, so stream each comment out as it is read
+      UserService userService = UserServices.get();
+      String email = userService.isUserLoggedIn() ? userService.getCurrentUser().getEmail() : null;
+      // the user's votes are looked up a chunk at a time, keeping only the comments voted on
+      Map<Long, Integer> votes = new HashMap<>();
+      List<Long> chunk = new ArrayList<>();
+      JsonWriter writer = new JsonWriter(response.getWriter());
+      writer.beginObject();
+      writer.name("comments").beginArray();
+      for(int i = 0; i < limit && itr.hasNext(); i++) {
+        Comment comment = itr.next();
+        gson.toJson(comment, Comment.class, writer);
+        if(email != null) {
+          chunk.add(comment.getId());
+          if(chunk.size() == MAX_CHUNK_SIZE) {
+            votes.putAll(store.userVotes(email, chunk));
+            chunk.clear();
           }
         }
       }
-    } else {
-      for(int i = 0; i < limit && itr.hasNext(); i++) {
-        Entity e = itr.next();
-        database.add(e);
+      if(email != null && chunk.size() > 0) {
+        votes.putAll(store.userVotes(email, chunk));
+      }
+      writer.endArray();
+      // only hand out a continuation token if there is something left to read
+      writer.name("cursor");
+      if(itr.hasNext()) {
+        writer.value(itr.cursor());
+      } else {
+        writer.nullValue();
       }
+      writeVotes(writer, votes);
+      writer.endObject();
+      writer.flush();
+      LOGGER.info("streamed from database " + commentQuery);
+      return;
+    }
+
+    // keep the continuation token after every comment so cached pages can be cut at any limit
+    List<Long> ids = new ArrayList<>();
+    List<String> comments = new ArrayList<>();
+    List<String> cursors = new ArrayList<>();
+    for(int i = 0; i < fetchLimit && itr.hasNext(); i++) {
+      Comment comment = itr.next();
+      ids.add(comment.getId());
+      comments.add(gson.toJson(comment));
+      cursors.add(itr.cursor());
     }
+    CommentCache.Page page = new CommentCache.Page(ids, comments, cursors, itr.hasNext());
+    cache.put(cacheKey, page, generation);
 
     // return as JSON
-    response.setContentType("application/json;");
-    Gson gson = new Gson();
-    String json = gson.toJson(database);
+    LOGGER.info("queried database for " + commentQuery);
+    writeCachedPage(response, page, limit, store);
+  }
+
+  /** Writes the first {@code limit} comments of a cached page as the JSON response. */
+  private void writeCachedPage(
+      HttpServletResponse response, 
+      CommentCache.Page page, 
+      int limit, 
+      CommentStore store) 
+      throws IOException 
+  {
+    int count = Math.min(limit, page.size());
+    JsonWriter writer = new JsonWriter(response.getWriter());
+    writer.beginObject();
+    writer.name("comments").beginArray();
+    for(int i = 0; i < count; i++) {
+      writer.jsonValue(page.commentJson(i));
+    }
+    writer.endArray();
+    writer.name("cursor").value(page.cursorAfter(count));
+    writeUserVotes(writer, page.ids(count), store);
+    writer.endObject();
+    writer.flush();
+  }
+
+  /**
+   * Writes the logged-in user's votes on the given comments as a "votes" object mapping
+   * comment id to vote. Votes are looked up per request so listings can be shared between users.
+   */
+  private void writeUserVotes(JsonWriter writer, List<Long> ids, CommentStore store) 
+      throws IOException 
+  {
+    Map<Long, Integer> votes = new HashMap<>();
+    UserService userService = UserServices.get();
+    if(userService.isUserLoggedIn() && ids.size() > 0) {
+      votes = store.userVotes(userService.getCurrentUser().getEmail(), ids);
+    }
+    writeVotes(writer, votes);
+  }
 
-    LOGGER.info("queried database for " + limit + " results, sorted by " + paramChoice + " in " + paramSort + " order and author matches " + auth);
-    response.getWriter().println(json);
+  /** Writes a "votes" object mapping comment id to the logged-in user's vote. */
+  private void writeVotes(JsonWriter writer, Map<Long, Integer> votes) throws IOException {
+    writer.name("votes").beginObject();
+    for(Map.Entry<Long, Integer> vote: votes.entrySet()) {
+      writer.name(String.valueOf(vote.getKey())).value(vote.getValue());
+    }
+    writer.endObject();
   }
 
   @Override
@@ -150,45 +216,27 @@ public class DataServlet extends HttpServlet {
       response.sendRedirect("/index.html");
       return;
     }
-    UserService userService = UserServiceFactory.getUserService();
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    UserService userService = UserServices.get();
 
     String auth = "";
     String name = "";
     // find user nickname if logged in
     if(userService.isUserLoggedIn()) {
       auth = userService.getCurrentUser().getEmail();
-      Query query =
-        new Query("User")
-            .setFilter(new Query.FilterPredicate("email", Query.FilterOperator.EQUAL, auth));
-      PreparedQuery results = datastore.prepare(query);
-      Entity entity = results.asSingleEntity();
-      if (entity != null) {
-        name = entity.getProperty("name").toString();
-      } else {
+      UserStore users = Stores.users();
+      // read past the cache: a stale name copied onto the comment would survive the next rename
+      name = users.currentNickname(auth);
+      if (name == null) {
         name = auth;
-        Entity newUser = new Entity("User", auth);
-        newUser.setProperty("name", name);
-        datastore.put(newUser);
+        users.storeNickname(auth, name);
       }
     }
-    // detect the language
-    Translate translate = TranslateOptions.getDefaultInstance().getService();
-    Detection detectedLanguage = translate.detect(text);
-    String language = detectedLanguage.getLanguage();
-
-    Entity comment = new Entity("Comment");
-    comment.setProperty("content", text);
-    comment.setProperty("timestamp", System.currentTimeMillis());
-    comment.setProperty("upvotes", 0);
-    comment.setProperty("author", auth);
-    comment.setProperty("name", name);
-    comment.setProperty("language", language);
-
-    datastore.put(comment);
+    long id = Stores.comments().add(text, auth, name);
+    CommentCache.getInstance().invalidateAll();
+    // the language is detected later so submitting doesn't wait on the Translate API
+    LanguageServlet.enqueue(id);
 
     LOGGER.info("added comment " + text);
     response.sendRedirect("/index.html");
   }
-
 }
@@ -1,55 +1,56 @@
 package com.google.sps.servlets;
 
+import com.google.appengine.api.users.UserService;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.KeyFactory;
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
+import com.google.gson.Gson;
+import com.google.sps.data.BulkDelete;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentStore;
+import com.google.sps.data.Stores;
+import com.google.sps.data.UserServices;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @WebServlet("/delete-data")
 public class DeleteServlet extends HttpServlet {
 
   private static final Logger LOGGER = Logger.getLogger(DeleteServlet.class.getName());
 
+  /** Deletes a single comment by id, or reports the progress of a bulk delete if no id is given. */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    CommentStore store = Stores.comments();
     if(request.getParameter("id") != null) {
       long id = Long.parseLong(request.getParameter("id"));
-      Key key = KeyFactory.createKey("Comment", id);
-      datastore.delete(key);
+      store.delete(id);
+      CommentCache.getInstance().invalidateAll();
       LOGGER.info("deleted comment with id " + id);
     } else {
-      LOGGER.info("id parameter is null, do nothing");
+      response.setContentType("application/json;");
+      response.getWriter().println(new Gson().toJson(store.deleteProgress()));
     }
   }
 
+  /**
+   * Deletes all comments. Only admins may start this; whatever can't be deleted within the time
+   * budget is resumed in the background by {@link BulkDeleteServlet}.
+   */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Comment");
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
-
-    for(Entity entity:results.asIterable()) {
-      datastore.delete(entity.getKey());
+    UserService userService = UserServices.get();
+    if(!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      LOGGER.log(Level.WARNING, "bulk delete requested by a non-admin");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
     }
 
-    LOGGER.info("deleted all comments from the database");
-
-    response.sendRedirect("/index.html");
+    BulkDelete.Progress progress = BulkDeleteServlet.deleteAll(null, null);
+    response.setContentType("application/json;");
+    response.getWriter().println(new Gson().toJson(progress));
   }
 }
@@ -0,0 +1,72 @@
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentStore;
+import com.google.sps.data.HotTranslations;
+import com.google.sps.data.LanguageDetector;
+import com.google.sps.data.Stores;
+import com.google.sps.data.TranslationClient;
+
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Task queue handler that detects the language of a newly added comment, then precomputes its
+ * translations into the hot languages, if any are configured.
+ */
+@WebServlet("/detect-language")
+public class LanguageServlet extends HttpServlet {
+
+  private static final Logger LOGGER = Logger.getLogger(LanguageServlet.class.getName());
+  private static final String QUEUE_NAME = "language-detection";
+
+  /** Queues language detection for a comment that was just stored. */
+  public static void enqueue(long commentId) {
+    Stores.tasks().add(
+        QUEUE_NAME, "/detect-language", Collections.singletonMap("id", String.valueOf(commentId)));
+  }
+
+  @Override
+  public void init() {
+    TranslationClient.getInstance().warmUp();
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from outside requests, so only task queue tasks have it
+    if(request.getHeader("X-AppEngine-QueueName") == null) {
+      LOGGER.log(Level.WARNING, "language detection requested outside the task queue");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    if(request.getParameter("id") == null) {
+      LOGGER.info("no comment id provided");
+      return;
+    }
+    long id = Long.parseLong(request.getParameter("id"));
+
+    CommentStore store = Stores.comments();
+    LanguageDetector detector = new LanguageDetector(TranslationClient.getInstance());
+    String language = detector.detectAndStore(store, id);
+    if(language == null) {
+      LOGGER.info("comment id " + id + " was deleted before detection");
+      return;
+    }
+    CommentCache.getInstance().invalidateAll();
+    LOGGER.info("detected language " + language + " for comment id " + id);
+
+    int translated = HotTranslations.precompute(
+        store, Stores.translations(), TranslationClient.getInstance(), id);
+    if(translated > 0) {
+      CommentCache.getInstance().invalidateAll();
+      LOGGER.info("precomputed " + translated + " translations for comment id " + id);
+    }
+  }
+}
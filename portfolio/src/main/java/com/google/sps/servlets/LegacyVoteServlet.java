@@ -0,0 +1,59 @@
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.sps.data.Stores;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Task queue handler that moves votes stored as properties on comments over to Vote entities,
+ * so comments stop carrying voter lists even for users who never vote again.
+ */
+@WebServlet("/migrate-legacy-votes")
+public class LegacyVoteServlet extends HttpServlet {
+
+  private static final Logger LOGGER = Logger.getLogger(LegacyVoteServlet.class.getName());
+  private static final String QUEUE_NAME = "migrations";
+  // how long one task spends migrating before handing the rest to the next task
+  private static final long TIME_BUDGET_MILLIS = 20 * 1000;
+  // instances starting within the same window share a single migration
+  private static final long START_WINDOW_MILLIS = 10 * 60 * 1000;
+
+  /** Starts the migration unless it has finished or was started recently. */
+  public static void startIfNeeded() {
+    if(Stores.comments().legacyVotesMigrated()) {
+      return;
+    }
+    long window = System.currentTimeMillis() / START_WINDOW_MILLIS;
+    Stores.tasks().addOnce(QUEUE_NAME, "legacy-votes-" + window, 0,
+        "/migrate-legacy-votes", Collections.<String, String>emptyMap());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from outside requests, so only task queue tasks have it
+    if(request.getHeader("X-AppEngine-QueueName") == null) {
+      LOGGER.log(Level.WARNING, "legacy vote migration requested outside the task queue");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    String cursor = Stores.comments().migrateLegacyVotes(
+        request.getParameter("cursor"), System.currentTimeMillis() + TIME_BUDGET_MILLIS);
+    if(cursor != null) {
+      Map<String, String> params = Collections.singletonMap("cursor", cursor);
+      Stores.tasks().add(QUEUE_NAME, "/migrate-legacy-votes", params);
+      LOGGER.info("moved some legacy votes, continuing in background");
+    } else {
+      LOGGER.info("every legacy vote has been moved to a Vote entity");
+    }
+  }
+}
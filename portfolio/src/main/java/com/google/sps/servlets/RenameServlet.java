@@ -0,0 +1,69 @@
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.Stores;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Task queue handler that copies a user's new nickname onto their comments. */
+@WebServlet("/rename-comments")
+public class RenameServlet extends HttpServlet {
+
+  private static final Logger LOGGER = Logger.getLogger(RenameServlet.class.getName());
+  private static final String QUEUE_NAME = "nickname-rename";
+  // how long one task spends renaming before handing the rest to the next task
+  private static final long TIME_BUDGET_MILLIS = 20 * 1000;
+
+  /**
+   * Queues renaming a user's comments.
+   * @param cursor The cursor to resume from, or null to start from the beginning.
+   */
+  public static void enqueue(String email, String nickname, String cursor) {
+    Map<String, String> params = new LinkedHashMap<>();
+    params.put("email", email);
+    params.put("nickname", nickname);
+    if(cursor != null) {
+      params.put("cursor", cursor);
+    }
+    Stores.tasks().add(QUEUE_NAME, "/rename-comments", params);
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from outside requests, so only task queue tasks have it
+    if(request.getHeader("X-AppEngine-QueueName") == null) {
+      LOGGER.log(Level.WARNING, "comment rename requested outside the task queue");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    String email = request.getParameter("email");
+    String nickname = request.getParameter("nickname");
+    if(email == null || nickname == null) {
+      LOGGER.info("no user or nickname provided");
+      return;
+    }
+
+    String cursor = Stores.comments().renameAuthor(
+        email, 
+        nickname, 
+        request.getParameter("cursor"), 
+        System.currentTimeMillis() + TIME_BUDGET_MILLIS);
+    CommentCache.getInstance().invalidateAll();
+
+    if(cursor != null) {
+      enqueue(email, nickname, cursor);
+      LOGGER.info("renamed some comments of " + email + ", continuing in background");
+    } else {
+      LOGGER.info("renamed comments of " + email + " to " + nickname);
+    }
+  }
+}
@@ -1,15 +1,22 @@
 package com.google.sps.servlets;
 
+import com.google.appengine.api.users.UserService;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.google.cloud.translate.Translate;
-import com.google.cloud.translate.TranslateOptions;
-import com.google.cloud.translate.Translation;
+import com.google.gson.Gson;
+import com.google.sps.data.CommentQuery;
+import com.google.sps.data.Stores;
+import com.google.sps.data.TranslationCache;
+import com.google.sps.data.TranslationClient;
+import com.google.sps.data.TranslationStore;
+import com.google.sps.data.UserServices;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,20 +24,85 @@ import java.util.logging.Logger;
 public class TranslateServlet extends HttpServlet {
 
   private static final Logger LOGGER = Logger.getLogger(TranslateServlet.class.getName());
+  // a full page of comments at the largest page size
+  private static final int MAX_BATCH_TEXTS = 1000;
 
+  @Override
+  public void init() {
+    TranslationClient.getInstance().warmUp();
+  }
+
+  /**
+   * Responds with the metrics of the shared translation client and the translation cache. These
+   * reveal how the instance is used, so only admins may see them.
+   */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = UserServices.get();
+    if(!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      LOGGER.log(Level.WARNING, "translation metrics requested by a non-admin");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    Stats stats = 
+        new Stats(TranslationClient.getInstance().stats(), TranslationCache.getInstance().stats());
+    response.setContentType("application/json;");
+    response.getWriter().println(new Gson().toJson(stats));
+  }
+
+  /**
+   * Translates the "text" parameter into the "lang" language and responds with the plain text.
+   * With a "batch" parameter, "text" may be repeated and the response is a JSON array of the
+   * translations in the same order.
+   */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    String text = request.getParameter("text");
     String lang = request.getParameter("lang");
-    LOGGER.info("text: " + text + "; lang: " + lang);
+    String[] texts = request.getParameterValues("text");
+    if(lang == null || texts == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "text and lang are required");
+      return;
+    }
+    // the language is part of every cache and storage key, so anything else would leave junk
+    if(!CommentQuery.isLanguageCode(lang)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid language " + lang);
+      return;
+    }
+    TranslationStore store = Stores.translations();
+    TranslationCache cache = TranslationCache.getInstance();
 
-    Translate translate = TranslateOptions.getDefaultInstance().getService();
-    Translation translation =
-        translate.translate(text, Translate.TranslateOption.targetLanguage(lang));
-    String translatedText = translation.getTranslatedText();
+    if(request.getParameter("batch") == null) {
+      LOGGER.info("text: " + texts[0] + "; lang: " + lang);
+      String translatedText = 
+          cache.translate(store, TranslationClient.getInstance(), texts[0], lang);
 
-    response.setContentType("text/html; charset=UTF-8");
+      response.setContentType("text/html; charset=UTF-8");
+      response.setCharacterEncoding("UTF-8");
+      response.getWriter().println(translatedText);
+      return;
+    }
+
+    if(texts.length > MAX_BATCH_TEXTS) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "too many texts in batch");
+      return;
+    }
+    LOGGER.info("batch of " + texts.length + " texts; lang: " + lang);
+    List<String> translated = 
+        cache.translateAll(store, TranslationClient.getInstance(), Arrays.asList(texts), lang);
+
+    response.setContentType("application/json; charset=UTF-8");
     response.setCharacterEncoding("UTF-8");
-    response.getWriter().println(translatedText);
+    response.getWriter().println(new Gson().toJson(translated));
+  }
+
+  /* nested class to help with JSON conversion */
+  private static class Stats {
+    private final TranslationClient.Stats client;
+    private final TranslationCache.Stats cache;
+
+    Stats(TranslationClient.Stats client, TranslationCache.Stats cache) {
+      this.client = client;
+      this.cache = cache;
+    }
   }
 }
@@ -6,14 +6,18 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.KeyFactory;
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentStore;
+import com.google.sps.data.Stores;
+import com.google.sps.data.UserServices;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,10 +25,12 @@ import java.util.logging.Logger;
 public class UpvoteServlet extends HttpServlet {
 
   private static final Logger LOGGER = Logger.getLogger(UpvoteServlet.class.getName());
+  // most votes accepted in one batch, so one request can't tie up the datastore for long
+  private static final int MAX_BATCH_SIZE = 100;
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    CommentStore store = Stores.comments();
     // make sure all required parameters are present
     if(request.getParameter("id") != null) {
       long id = Long.parseLong(request.getParameter("id"));
@@ -35,50 +41,136 @@ public class UpvoteServlet extends HttpServlet {
         LOGGER.log(Level.WARNING, "no vote provided");
         return;
       }
-      UserService userService = UserServiceFactory.getUserService();
+      if(!isValidVote(vote)) {
+        LOGGER.log(Level.WARNING, "invalid vote " + vote);
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "votes must be 1 or -1");
+        return;
+      }
+      UserService userService = UserServices.get();
       if(!userService.isUserLoggedIn()) {
         LOGGER.log(Level.WARNING, "User not currently logged in, returning.");
         return;
       }
       String email = userService.getCurrentUser().getEmail();
-      String[] temp = email.split("@");
-      String email2 = temp[0] + "%40" + temp[1];
-      Key key = KeyFactory.createKey("Comment", id);
-      int statusCode = vote;
-      try {
-        Entity comment = datastore.get(key);
-        int upvotes = Integer.parseInt(comment.getProperty("upvotes").toString());
-        // check if user has already voted on this comment
-        if(comment.hasProperty(email)) {
-          int currentVote = Integer.parseInt(comment.getProperty(email).toString());
-          if(vote != currentVote) {
-            // reverse the vote
-            upvotes -= (currentVote - vote);
-            comment.setProperty(email, vote);
-          } else {
-            // unselect the vote
-            comment.removeProperty(email);
-            upvotes -= vote;
-            statusCode = 0;
-          }
-        } else {
-          upvotes += vote;
-          comment.setProperty(email, vote);
-        }
-        comment.setProperty("upvotes", upvotes);
-        datastore.put(comment);
-        LOGGER.info("changed upvote count for comment id " + id);
-
-        response.setContentType("text/html;");
-        response.getWriter().println(statusCode);
-      } catch (EntityNotFoundException e) {
+      Map<Long, Integer> applied = store.applyVotes(
+          email, Collections.singletonMap(id, Collections.singletonList(vote)));
+      Long upvotes = applied.containsKey(id) 
+          ? store.totals(Collections.singletonList(id)).get(id) : null;
+      if(upvotes == null) {
         response.setContentType("text/html;");
         response.getWriter().println("comment not found");
         LOGGER.log(Level.WARNING, "comment not found for id " + id);
+        return;
       }
+      UpvoteSyncServlet.enqueue(id);
+      CommentCache.getInstance().invalidateAll();
+      LOGGER.info("changed upvote count for comment id " + id);
+
+      response.setContentType("application/json;");
+      response.getWriter().println(new Gson().toJson(new VoteResult(applied.get(id), upvotes)));
     } else {
       LOGGER.info("no comment id provided");
       return;
     }
   }
+
+  /**
+   * Applies a batch of votes from the logged-in user, sent as a JSON array of at most 100
+   * {id, vote} objects in the order they were cast. Repeated votes on the same comment are
+   * coalesced. Responds with a JSON object mapping each existing comment id to its
+   * {vote, upvotes} after the batch.
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = UserServices.get();
+    Gson gson = new Gson();
+    if(!userService.isUserLoggedIn()) {
+      LOGGER.log(Level.WARNING, "User not currently logged in, returning.");
+      // a JSON body, so the page can parse the error like any other vote response
+      response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+      response.setContentType("application/json;");
+      response.getWriter().println(
+          gson.toJson(Collections.singletonMap("error", "login required to vote")));
+      return;
+    }
+    String email = userService.getCurrentUser().getEmail();
+
+    VoteRequest[] batch;
+    try {
+      batch = gson.fromJson(request.getReader(), VoteRequest[].class);
+    } catch (JsonParseException e) {
+      LOGGER.log(Level.WARNING, "malformed vote batch");
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "malformed vote batch");
+      return;
+    }
+    if(batch != null && batch.length > MAX_BATCH_SIZE) {
+      LOGGER.log(Level.WARNING, "vote batch of " + batch.length + " is too large");
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, 
+          "at most " + MAX_BATCH_SIZE + " votes per batch");
+      return;
+    }
+    // group the votes by comment, keeping the order they were cast in
+    Map<Long, List<Integer>> votes = new LinkedHashMap<>();
+    if(batch != null) {
+      for(VoteRequest v: batch) {
+        if(v == null || !isValidVote(v.vote)) {
+          LOGGER.log(Level.WARNING, "invalid vote in batch");
+          response.sendError(HttpServletResponse.SC_BAD_REQUEST, "votes must be 1 or -1");
+          return;
+        }
+        List<Integer> commentVotes = votes.get(v.id);
+        if(commentVotes == null) {
+          commentVotes = new ArrayList<>();
+          votes.put(v.id, commentVotes);
+        }
+        commentVotes.add(v.vote);
+      }
+    }
+
+    CommentStore store = Stores.comments();
+    Map<Long, Integer> applied = store.applyVotes(email, votes);
+    // one read for the whole batch; the sortable totals are synced later in the background
+    Map<Long, Long> totals = store.totals(new ArrayList<>(applied.keySet()));
+    Map<Long, VoteResult> results = new LinkedHashMap<>();
+    for(Map.Entry<Long, Integer> entry: applied.entrySet()) {
+      Long upvotes = totals.get(entry.getKey());
+      // no total means the comment was deleted while the batch was applied
+      if(upvotes != null) {
+        results.put(entry.getKey(), new VoteResult(entry.getValue(), upvotes));
+        UpvoteSyncServlet.enqueue(entry.getKey());
+      }
+    }
+    if(!applied.isEmpty()) {
+      CommentCache.getInstance().invalidateAll();
+    }
+    LOGGER.info("applied " + (batch == null ? 0 : batch.length) + " votes on " 
+        + applied.size() + " comments for user " + email);
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(results));
+  }
+
+  /** Returns whether a vote is an upvote or a downvote, the only votes a user can cast. */
+  private static boolean isValidVote(int vote) {
+    return vote == 1 || vote == -1;
+  }
+
+  /* nested class to help with JSON conversion of a batched vote */
+  private static class VoteRequest {
+    long id;
+    int vote;
+  }
+
+  /* nested class to help with JSON conversion */
+  private static class VoteResult {
+    // the user's vote after the update, 0 if it was withdrawn
+    int vote;
+    // the comment's new upvote total
+    long upvotes;
+
+    public VoteResult(int vote, long upvotes) {
+      this.vote = vote;
+      this.upvotes = upvotes;
+    }
+  }
 }
@@ -0,0 +1,62 @@
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.Stores;
+
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Task queue handler that copies a comment's upvote total onto its sortable property. Votes
+ * schedule at most one of these per comment per sync interval, so however many votes a comment
+ * gets, the comment itself is written at most once per interval.
+ */
+@WebServlet("/sync-upvotes")
+public class UpvoteSyncServlet extends HttpServlet {
+
+  private static final Logger LOGGER = Logger.getLogger(UpvoteSyncServlet.class.getName());
+  private static final String QUEUE_NAME = "upvote-sync";
+  // how often at most a comment's sortable total is written
+  private static final long SYNC_INTERVAL_MILLIS = 10 * 1000;
+
+  /**
+   * Schedules a sync of a comment's sortable total at the end of the current interval, unless one
+   * is already scheduled. The sync runs after every vote cast in the interval.
+   */
+  public static void enqueue(long commentId) {
+    long now = System.currentTimeMillis();
+    long interval = now / SYNC_INTERVAL_MILLIS;
+    Stores.tasks().addOnce(
+        QUEUE_NAME,
+        "upvotes-" + commentId + "-" + interval,
+        (interval + 1) * SYNC_INTERVAL_MILLIS - now,
+        "/sync-upvotes",
+        Collections.singletonMap("id", String.valueOf(commentId)));
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    // App Engine strips this header from outside requests, so only task queue tasks have it
+    if(request.getHeader("X-AppEngine-QueueName") == null) {
+      LOGGER.log(Level.WARNING, "upvote sync requested outside the task queue");
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    if(request.getParameter("id") == null) {
+      LOGGER.info("no comment id provided");
+      return;
+    }
+    long id = Long.parseLong(request.getParameter("id"));
+    Stores.comments().syncTotal(id);
+    // the comment may have moved in listings sorted by score
+    CommentCache.getInstance().invalidateAll();
+    LOGGER.info("synced upvotes for comment id " + id);
+  }
+}
@@ -29,6 +29,17 @@ const green = "#95f0e5";
 
 // json "cache" of currently queried comments
 var js = "";
+// continuation token for the next page of comments, or null if all have been loaded
+var nextCursor = null;
+// logged-in user's votes on the loaded comments, by comment id
+var userVotes = {};
+// votes waiting to be sent to the server, in the order they were cast
+var pendingVotes = [];
+// timer for sending the queued votes, and how long to wait for more in ms
+var voteTimer = null;
+const voteDelay = 300;
+// most votes the server accepts in one request
+const maxVoteBatch = 100;
 // json object of logged-in user's information
 var user = "";
 
@@ -44,6 +55,8 @@ var totalElems = 15;
 var pg = 1;
 // filter by author
 var showingAuthor = "";
+// language the whole page is translated into, or empty for none
+var pageLang = "";
 
 // displaying edit nickname box?
 var editing = false;
@@ -60,6 +73,7 @@ function load() {
 
   const aboutLang = document.getElementById("about-language");
   languageDropdown(aboutLang);
+  languageDropdown(document.getElementById("page-language"));
   aboutLang.onchange = function() {
     var icon = document.getElementsByClassName("plus")[0];
     var text = document.getElementsByClassName("dropdown-text")[0];
@@ -134,23 +148,45 @@ function rotateItem(index) {
   }
 }
 
-/* Fetches comment data from the servlet and refreshes the comment box content. */
-function getAndRefreshComments() {
-  var url = "/data?limit=" + totalElems + "&sort=" + sortDir + "&sortBy=" + sortBy;
+/* Builds the comment query url for the current settings. */
+function commentUrl(limit) {
+  var url = "/data?limit=" + limit + "&sort=" + sortDir + "&sortBy=" + sortBy;
   if(showingAuthor.length > 0) {
     url = url + "&auth=" + showingAuthor;
   }
-  const response = fetch(url);
+  if(pageLang.length > 0) {
+    url = url + "&lang=" + pageLang;
+  }
+  return url;
+}
+
+/* Fetches comment data from the servlet and refreshes the comment box content. */
+function getAndRefreshComments() {
+  const response = fetch(commentUrl(totalElems));
   response.then(handleCommentJson);
 }
 
+/* Fetches only the comments after the ones already loaded and appends them. */
+function getMoreComments() {
+  const url = commentUrl(totalElems - js.length) + "&cursor=" + encodeURIComponent(nextCursor);
+  fetch(url).then(result => result.json()).then(
+    function(page) {
+      js = js.concat(page.comments);
+      nextCursor = page.cursor;
+      Object.assign(userVotes, page.votes);
+      refreshComments();
+  });
+}
+
 function handleCommentJson(response) {
   const commentJSON = response.json();
   commentJSON.then(handleCommentRefresh);
 }
 
-function handleCommentRefresh(commentJson) {
-  js = commentJson;
+function handleCommentRefresh(page) {
+  js = page.comments;
+  nextCursor = page.cursor;
+  userVotes = page.votes;
   refreshComments();
 }
 
@@ -162,6 +198,7 @@ function commentConfig() {
   var newTotal = parseInt(document.getElementById("limit").value);
   var findAuthor =  document.getElementById("find-author").value.trim();
   var needGet = false;
+  var needMore = false;
   var needRefresh = false;
 
   // filter is not case-sensitive or space-sensitive
@@ -171,12 +208,14 @@ function commentConfig() {
     findAuthor = "";
   }
   if(newSort.localeCompare(sortDir) != 0 
-        || newTotal > js.length 
         || findAuthor.localeCompare(showingAuthor) != 0
         || newSortBy.localeCompare(sortBy) != 0
   ) {
     needGet = true;
-  } else if (newTotal < totalElems || numElemsPerPage != newElemsPerPage) {
+  } else if (newTotal > js.length && nextCursor != null) {
+    // only the comments that haven't been loaded yet need to be fetched
+    needMore = true;
+  } else if (newTotal != totalElems || numElemsPerPage != newElemsPerPage) {
     needRefresh = true;
   }
 
@@ -193,6 +232,8 @@ function commentConfig() {
 
   if(needGet) {
     getAndRefreshComments();
+  } else if (needMore) {
+    getMoreComments();
   } else if (needRefresh) {
     refreshComments();
   }
@@ -233,19 +274,24 @@ function refreshComments() {
     pageCount.innerHTML = "/";
   } else {  
     for(var i = (pg-1)*numElemsPerPage; i < Math.min(js.length, totalElems) && i < pg*numElemsPerPage; i++) {
+      // show the translation into the page language when the server has one
+      var translated = js[i].hasOwnProperty("translation");
       target.appendChild(
           createElement(
-              js[i].propertyMap.content, 
-              js[i].propertyMap.timestamp, 
-              js[i].propertyMap.upvotes, 
-              js[i].propertyMap.name, 
-              js[i].propertyMap.author,
-              js[i].propertyMap.language,
+              translated ? js[i].translation : js[i].content, 
+              js[i].timestamp, 
+              js[i].upvotes, 
+              js[i].name, 
+              js[i].author,
+              translated ? pageLang : js[i].language,
               i
           )
         );
     }
     pageCount.innerHTML = pg + "/" + maxPage;
+    if(pageLang.length > 0) {
+      translateMissing();
+    }
   }
   
   var icon = document.getElementById("plus-comment");
@@ -327,7 +373,7 @@ function createElement(text, millis, upvotes, name, author, languageCode, i) {
   down.innerText = "-";
   
   if(user.loggedIn) {
-    var v = js[i]["propertyMap"][user.email];
+    var v = userVotes[js[i].id];
     if(v === undefined) {
       v = 0;
     }
@@ -360,6 +406,8 @@ function createElement(text, millis, upvotes, name, author, languageCode, i) {
   var language = "??";
   if(langs.hasOwnProperty(languageCode)) {
     language = langs[languageCode];
+  } else if (languageCode == "pending") {
+    language = "detecting...";
   }
   thisLang.id = "thisLang" + i;
   thisLang.innerText = "Language: " + language;
@@ -434,7 +482,7 @@ async function deleteAllComments() {
 
 /* Deletes an individual comment from the database and refreshes the page. */
 async function deleteComment(i) {
-  const id = js[i].key.id;
+  const id = js[i].id;
 
   // do this so visual feedback is instantaneous
   document.getElementsByClassName("comment")[i - (pg-1)*numElemsPerPage].style.display = "none";
@@ -444,23 +492,41 @@ async function deleteComment(i) {
 }
 
 /* Increments or decrements the upvote count of a comment */
-async function vote(i, amount) {
+function vote(i, amount) {
   if(!user.loggedIn) {
     alert("Please login first!");
     return;
   }
-  const id = js[i].key.id;
-  await fetch("/upvote-data?id=" + id + "&vote=" + amount);
-  getAndRefreshComments();
+  // votes cast in quick succession are sent to the server together
+  pendingVotes.push({id: js[i].id, vote: amount});
+  clearTimeout(voteTimer);
+  voteTimer = setTimeout(sendVotes, voteDelay);
+}
 
-  var upvotes = js[i].propertyMap.upvotes;
-  var countText = upvotes;
-  if(upvotes > 0) {
-    countText = "+" + upvotes;
-  } else if (upvotes == 0) {
-    countText = "";
+/* Sends all queued votes in batches and shows the returned totals. */
+async function sendVotes() {
+  while(pendingVotes.length > 0) {
+    // the server accepts at most maxVoteBatch votes per request
+    const batch = pendingVotes.splice(0, maxVoteBatch);
+    const request = new Request("/upvote-data", {method: "POST", body: JSON.stringify(batch)});
+    const response = await fetch(request);
+    if(!response.ok) {
+      // the rest of the queue would fail the same way, e.g. after logging out elsewhere
+      pendingVotes = [];
+      alert(response.status == 401 ? "Please login first!" : "Your votes could not be saved.");
+      break;
+    }
+    const results = await response.json();
+
+    // the totals come back with the votes, so there is no need to reload the comments
+    for(var i = 0; i < js.length; i++) {
+      if(results.hasOwnProperty(js[i].id)) {
+        js[i].upvotes = results[js[i].id].upvotes;
+        userVotes[js[i].id] = results[js[i].id].vote;
+      }
+    }
   }
-  document.getElementsByClassName("up-counter")[i - (pg-1)*numElemsPerPage].innerText = countText;
+  refreshComments();
 }
 
 /* Fetches data from authentication servlet and updates webpage display. */
@@ -548,6 +614,67 @@ function translateDropdown(src, tgt, lngId, thisLang, i) {
   });
 }
 
+/** 
+ * Translates every comment into the language picked in the page-wide dropdown. Comments come
+ * back with their precomputed translations, and any that weren't precomputed are translated
+ * afterwards by translateMissing().
+ */
+function translatePage() {
+  pageLang = document.getElementById("page-language").value;
+  getAndRefreshComments();
+}
+
+/* Translates the comments on the current page that have no translation yet, in one request. */
+function translateMissing() {
+  var language = pageLang;
+  var first = (pg-1)*numElemsPerPage;
+  var last = Math.min(js.length, totalElems, pg*numElemsPerPage);
+  var missing = [];
+  var params = new URLSearchParams();
+  params.append("batch", "true");
+  params.append("lang", language);
+  for(var i = first; i < last; i++) {
+    if(!js[i].hasOwnProperty("translation")) {
+      missing.push(i);
+      params.append("text", js[i].content);
+      document.getElementById("comment" + i).innerText = "Loading translation...";
+    }
+  }
+  if(missing.length == 0) {
+    return;
+  }
+  var request = new Request("/translate-data", {method: "POST", body: params});
+
+  fetch(request).then(result => result.json()).then(
+    function(translations) {
+    if(language != pageLang) {
+      // the page language changed and the comments were reloaded meanwhile
+      return;
+    }
+    var langName = "??";
+    if(langs.hasOwnProperty(language)) {
+      langName = langs[language];
+    }
+    for(var j = 0; j < missing.length; j++) {
+      var i = missing[j];
+      // keep the translation so paging back doesn't ask for it again
+      js[i].translation = translations[j];
+      const target = document.getElementById("comment" + i);
+      if(target == null) {
+        continue;
+      }
+      target.innerText = translations[j];
+      document.getElementById("thisLang" + i).innerText = "Language: " + langName;
+    }
+    var icon = document.getElementById("plus-comment");
+    var text = document.getElementById("comment-wrapper");
+    var textContent = document.getElementById("comment-box");
+    if(icon.classList.contains("clicked")) {
+      text.style.height = (textContent.clientHeight + 60) + "px";
+    }
+  });
+}
+
 /* Toggles between nickname input and input display. */
 function toggleNicknameDisplay() {
   const nameLabel = document.getElementById("comment-user");
@@ -0,0 +1,52 @@
+package com.google.sps.data;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Cached listing pages and the continuation tokens they hand out. */
+@RunWith(JUnit4.class)
+public final class CommentCacheTest {
+
+  @Test
+  public void cursorAfterPartOfPage() {
+    CommentCache.Page page = page(false);
+    Assert.assertEquals("c1", page.cursorAfter(1));
+    Assert.assertEquals("c2", page.cursorAfter(2));
+  }
+
+  @Test
+  public void cursorAfterWholePage() {
+    // the cached bucket ends where the listing does
+    Assert.assertNull(page(false).cursorAfter(3));
+    // the listing continues past the cached bucket
+    Assert.assertEquals("c3", page(true).cursorAfter(3));
+  }
+
+  @Test
+  public void emptyPagesAreNeverRequested() {
+    for(String limit: new String[] {"0", "-1"}) {
+      try {
+        CommentQuery.fromParameters(limit, null, null, null, null, null);
+        Assert.fail("limit " + limit + " was accepted");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    CommentQuery smallest = CommentQuery.fromParameters("1", null, null, null, null, null);
+    Assert.assertEquals(1, smallest.getLimit());
+    Assert.assertEquals(10, CommentCache.bucketLimit(smallest));
+    // even the smallest page of a longer listing points at the rest of it
+    Assert.assertEquals("c1", page(false).cursorAfter(smallest.getLimit()));
+  }
+
+  private static CommentCache.Page page(boolean hasMore) {
+    return new CommentCache.Page(
+        Arrays.asList(1L, 2L, 3L),
+        Arrays.asList("{\"id\":1}", "{\"id\":2}", "{\"id\":3}"),
+        Arrays.asList("c1", "c2", "c3"),
+        hasMore);
+  }
+}
@@ -0,0 +1,103 @@
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Paging through {@link InMemoryCommentStore} listings, with and without an author filter. */
+@RunWith(JUnit4.class)
+public final class InMemoryCommentStoreTest {
+  private static final String ALICE = "alice@example.com";
+  private static final String BOB = "bob@example.com";
+
+  private InMemoryCommentStore store;
+  // ids of the comments written by each author, in the order they were added
+  private final List<Long> all = new ArrayList<>();
+  private final List<Long> alice = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    store = new InMemoryCommentStore();
+    for(int i = 0; i < 25; i++) {
+      boolean byAlice = (i % 3 == 0);
+      long id = store.add("Comment " + i, byAlice ? ALICE : BOB, byAlice ? "Alice A" : "Bob");
+      all.add(id);
+      if(byAlice) {
+        alice.add(id);
+      }
+    }
+  }
+
+  @Test
+  public void unfilteredPagesCoverEveryCommentOnce() {
+    Assert.assertEquals(all, readAllPages("", "timestamp", "ascending", 4));
+    Assert.assertEquals(reversed(all), readAllPages("", "timestamp", "descending", 7));
+  }
+
+  @Test
+  public void filteredPagesCoverOnlyMatchingComments() {
+    Assert.assertEquals(alice, readAllPages("alice", "timestamp", "ascending", 3));
+    // nickname with different spacing and case, and the full email
+    Assert.assertEquals(reversed(alice), readAllPages("ALICE a", "timestamp", "descending", 2));
+    Assert.assertEquals(alice, readAllPages(ALICE, "timestamp", "ascending", 100));
+  }
+
+  @Test
+  public void filterNobodyMatchesIsEmpty() {
+    Assert.assertEquals(
+        Collections.emptyList(), readAllPages("carol", "timestamp", "ascending", 5));
+  }
+
+  @Test
+  public void filteredListingFollowsVotes() {
+    long top = alice.get(alice.size() - 1);
+    store.applyVotes(BOB, Collections.singletonMap(top, Collections.singletonList(1)));
+
+    List<Long> ids = readAllPages("alice", "upvotes", "descending", 2);
+    Assert.assertEquals(alice.size(), ids.size());
+    Assert.assertEquals(top, (long) ids.get(0));
+  }
+
+  @Test
+  public void filteredListingFollowsRenamesAndDeletes() {
+    store.renameAuthor(ALICE, "Zed", null, Long.MAX_VALUE);
+    Assert.assertEquals(
+        Collections.emptyList(), readAllPages("alicea", "timestamp", "ascending", 5));
+    Assert.assertEquals(alice, readAllPages("zed", "timestamp", "ascending", 5));
+    // the email and its username still match
+    Assert.assertEquals(alice, readAllPages("alice", "timestamp", "ascending", 5));
+
+    store.delete(alice.get(0));
+    Assert.assertEquals(
+        alice.subList(1, alice.size()), readAllPages("zed", "timestamp", "ascending", 5));
+  }
+
+  /** Reads a listing page by page, resuming each page from the previous page's cursor. */
+  private List<Long> readAllPages(String author, String sortBy, String sort, int pageSize) {
+    List<Long> ids = new ArrayList<>();
+    String cursor = null;
+    while(true) {
+      CommentQuery query = CommentQuery.fromParameters(
+          String.valueOf(pageSize), sort, sortBy, author, cursor, null);
+      CommentStore.Listing listing = store.list(query, pageSize);
+      for(int i = 0; i < pageSize && listing.hasNext(); i++) {
+        ids.add(listing.next().getId());
+      }
+      if(!listing.hasNext()) {
+        return ids;
+      }
+      cursor = listing.cursor();
+    }
+  }
+
+  private static List<Long> reversed(List<Long> ids) {
+    List<Long> copy = new ArrayList<>(ids);
+    Collections.reverse(copy);
+    return copy;
+  }
+}
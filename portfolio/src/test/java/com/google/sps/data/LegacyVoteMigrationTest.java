@@ -0,0 +1,112 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Moving votes stored as comment properties over to Vote entities. */
+@RunWith(JUnit4.class)
+public final class LegacyVoteMigrationTest {
+  // more voters than fit in one cross-group transaction
+  private static final int VOTERS = 60;
+
+  // cross-group transactions need the high replication datastore; 0% unapplied keeps it consistent
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(0));
+
+  private DatastoreService datastore;
+  private DatastoreCommentStore store;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+    store =
+        new DatastoreCommentStore(datastore, DatastoreServiceFactory.getAsyncDatastoreService());
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void movesVotesWithoutChangingTotals() throws Exception {
+    long id = store.add("An old comment", "author@example.com", "Author");
+    // written the way votes used to be: the total on the comment and each vote beside it
+    Entity comment = datastore.get(KeyFactory.createKey("Comment", id));
+    long total = 0;
+    for(int i = 0; i < VOTERS; i++) {
+      int vote = (i % 4 == 0) ? -1 : 1;
+      comment.setProperty(voter(i), vote);
+      total += vote;
+    }
+    comment.removeProperty(VoteCounter.BASE_PROPERTY);
+    comment.setProperty("upvotes", total);
+    datastore.put(comment);
+    // this voter has voted since votes moved, so their Vote entity is the current one
+    store.applyVotes(voter(1), Collections.singletonMap(id, Arrays.asList(1, -1)));
+    total -= 2;
+
+    Assert.assertNull(store.migrateLegacyVotes(null, Long.MAX_VALUE));
+    Assert.assertTrue(store.legacyVotesMigrated());
+
+    Entity migrated = datastore.get(KeyFactory.createKey("Comment", id));
+    for(int i = 0; i < VOTERS; i++) {
+      Assert.assertFalse(migrated.hasProperty(voter(i)));
+    }
+    Map<Long, Integer> votes = store.userVotes(voter(0), Collections.singletonList(id));
+    Assert.assertEquals(-1, (int) votes.get(id));
+    votes = store.userVotes(voter(1), Collections.singletonList(id));
+    Assert.assertEquals(-1, (int) votes.get(id));
+    votes = store.userVotes(voter(2), Collections.singletonList(id));
+    Assert.assertEquals(1, (int) votes.get(id));
+    Assert.assertEquals(total, (long) store.totals(Collections.singletonList(id)).get(id));
+  }
+
+  @Test
+  public void resumesFromCursor() throws Exception {
+    for(int i = 0; i < 3; i++) {
+      long id = store.add("Comment " + i, "author@example.com", "Author");
+      Entity comment = datastore.get(KeyFactory.createKey("Comment", id));
+      comment.setProperty(voter(i), 1);
+      comment.removeProperty(VoteCounter.BASE_PROPERTY);
+      comment.setProperty("upvotes", 1);
+      datastore.put(comment);
+    }
+
+    // a deadline already passed still moves one comment before handing back a cursor
+    String cursor = store.migrateLegacyVotes(null, 0);
+    int runs = 1;
+    while(cursor != null) {
+      cursor = store.migrateLegacyVotes(cursor, 0);
+      runs ++;
+    }
+    Assert.assertEquals(3, runs);
+    Assert.assertTrue(store.legacyVotesMigrated());
+    for(Entity comment: datastore.prepare(new Query("Comment")).asIterable()) {
+      long id = comment.getKey().getId();
+      Assert.assertEquals(1L, (long) store.totals(Collections.singletonList(id)).get(id));
+      for(String property: comment.getProperties().keySet()) {
+        Assert.assertFalse(property.contains("@"));
+      }
+    }
+  }
+
+  private static String voter(int i) {
+    return "voter" + i + "@example.com";
+  }
+}
@@ -0,0 +1,127 @@
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Casts many concurrent votes on one comment through the datastore store. */
+@RunWith(JUnit4.class)
+public final class VoteLoadTest {
+  private static final int THREADS = 10;
+  private static final int VOTERS_PER_THREAD = 300;
+  // votes may still give up after all their retries, but only rarely
+  private static final int MAX_ROLLBACKS = THREADS * VOTERS_PER_THREAD / 100;
+
+  // cross-group transactions need the high replication datastore; 0% unapplied keeps it consistent
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(0));
+
+  private DatastoreService datastore;
+  private DatastoreCommentStore store;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    datastore = DatastoreServiceFactory.getDatastoreService();
+    store = 
+        new DatastoreCommentStore(datastore, DatastoreServiceFactory.getAsyncDatastoreService());
+  }
+
+  @After
+  public void tearDown() {
+    helper.tearDown();
+  }
+
+  @Test
+  public void concurrentVotesAddUpExactly() throws Exception {
+    long id = store.add("A popular comment", "author@example.com", "Author");
+    // worker threads need the test's API environment to reach the local datastore
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    AtomicLong expected = new AtomicLong();
+    AtomicLong rollbacks = new AtomicLong();
+
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<Void>> workers = new ArrayList<>();
+    for(int t = 0; t < THREADS; t++) {
+      int thread = t;
+      workers.add(executor.submit(() -> {
+        ApiProxy.setEnvironmentForCurrentThread(environment);
+        start.await();
+        for(int i = 0; i < VOTERS_PER_THREAD; i++) {
+          int voter = thread * VOTERS_PER_THREAD + i;
+          List<Integer> votes = votesOf(voter);
+          Map<Long, Integer> result;
+          try {
+            result = store.applyVotes(
+                "voter" + voter + "@example.com", Collections.singletonMap(id, votes));
+          } catch (ConcurrentModificationException e) {
+            // gave up after its retries and rolled back, so it counts for nothing
+            rollbacks.incrementAndGet();
+            continue;
+          }
+          Assert.assertEquals(finalVote(votes), (int) result.get(id));
+          expected.addAndGet(result.get(id));
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    executor.shutdown();
+    for(Future<Void> worker: workers) {
+      worker.get();
+    }
+
+    // retries must absorb nearly all contention on the counter shards
+    Assert.assertTrue(
+        rollbacks.get() + " votes rolled back", rollbacks.get() <= MAX_ROLLBACKS);
+    Assert.assertEquals(
+        expected.get(), (long) store.totals(Collections.singletonList(id)).get(id));
+    // votes never write the comment itself; only the sync does
+    Assert.assertEquals(0L, upvotesProperty(id));
+    store.syncTotal(id);
+    Assert.assertEquals(expected.get(), upvotesProperty(id));
+  }
+
+  /** Mixes upvotes, downvotes and withdrawn votes across voters. */
+  private static List<Integer> votesOf(int voter) {
+    if(voter % 5 == 0) {
+      return Arrays.asList(1, 1);
+    }
+    return Collections.singletonList((voter % 3 == 0) ? -1 : 1);
+  }
+
+  private static int finalVote(List<Integer> votes) {
+    int vote = 0;
+    for(int v: votes) {
+      vote = (v == vote) ? 0 : v;
+    }
+    return vote;
+  }
+
+  private long upvotesProperty(long id) throws Exception {
+    Entity comment = datastore.get(KeyFactory.createKey("Comment", id));
+    return ((Number) comment.getProperty("upvotes")).longValue();
+  }
+}
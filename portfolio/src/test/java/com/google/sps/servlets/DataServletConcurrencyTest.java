@@ -0,0 +1,222 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.data.CommentAuthors;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentQuery;
+import com.google.sps.data.CommentStore;
+import com.google.sps.data.Stores;
+import com.google.sps.data.UserServices;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Interleaves comment listings with different parameters on one servlet instance. */
+@RunWith(JUnit4.class)
+public final class DataServletConcurrencyTest {
+  private static final int COMMENTS = 60;
+  private static final int AUTHORS = 4;
+  private static final int THREADS = 8;
+  private static final int REQUESTS_PER_THREAD = 250;
+
+  private static final String[] LIMITS = {"1", "3", "10", "25", "100"};
+  private static final String[] SORTS = {"ascending", "descending"};
+  // no filter, an email username and a nickname with different spacing and case
+  private static final String[] AUTHOR_FILTERS = {"", "user1", "user 2"};
+
+  private final DataServlet servlet = new DataServlet();
+  private final List<Map<String, String>> queries = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    Stores.useInMemory();
+    UserServices.set(loggedOut());
+    CommentCache.getInstance().invalidateAll();
+
+    CommentStore store = Stores.comments();
+    for(int i = 0; i < COMMENTS; i++) {
+      long id = store.add(
+          "Comment " + i, "user" + (i % AUTHORS) + "@example.com", "User " + (i % AUTHORS));
+      // spread the scores out so sorting by upvotes differs from sorting by time
+      for(int v = 0; v < i % 5; v++) {
+        store.applyVotes("voter" + v + "@example.com",
+            Collections.singletonMap(id, Collections.singletonList(1)));
+      }
+    }
+
+    for(String limit: LIMITS) {
+      for(String sort: SORTS) {
+        for(String sortBy: CommentQuery.SORTABLE_PROPERTIES) {
+          for(String auth: AUTHOR_FILTERS) {
+            Map<String, String> query = new LinkedHashMap<>();
+            query.put("limit", limit);
+            query.put("sort", sort);
+            query.put("sortBy", sortBy);
+            query.put("auth", auth);
+            queries.add(query);
+          }
+        }
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    UserServices.set(null);
+    CommentCache.getInstance().invalidateAll();
+  }
+
+  @Test
+  public void sequentialResponsesMatchTheirParameters() throws IOException {
+    for(Map<String, String> query: queries) {
+      assertMatches(query, get(query));
+    }
+  }
+
+  @Test
+  public void interleavedResponsesMatchTheirOwnParameters() throws Exception {
+    // the answer to each query when nothing else is running
+    List<String> expected = new ArrayList<>();
+    for(Map<String, String> query: queries) {
+      expected.add(get(query));
+    }
+    CommentCache.getInstance().invalidateAll();
+
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<Void>> workers = new ArrayList<>();
+    for(int t = 0; t < THREADS; t++) {
+      Random random = new Random(t);
+      workers.add(executor.submit(() -> {
+        start.await();
+        for(int i = 0; i < REQUESTS_PER_THREAD; i++) {
+          int q = random.nextInt(queries.size());
+          Assert.assertEquals(queries.get(q).toString(), expected.get(q), get(queries.get(q)));
+          // drop cached pages now and then so fetches and cache fills interleave too
+          if(i % 50 == 0) {
+            CommentCache.getInstance().invalidateAll();
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    executor.shutdown();
+    for(Future<Void> worker: workers) {
+      // rethrows any assertion that failed on a worker thread
+      worker.get();
+    }
+  }
+
+  /** Checks a listing against the limit, author filter and sort order it was asked for. */
+  private static void assertMatches(Map<String, String> query, String body) {
+    JsonArray comments = JsonParser.parseString(body).getAsJsonObject().getAsJsonArray("comments");
+    String auth = CommentAuthors.normalize(query.get("auth"));
+    int matching = auth.isEmpty() ? COMMENTS : COMMENTS / AUTHORS;
+    int limit = Integer.parseInt(query.get("limit"));
+    Assert.assertEquals(query.toString(), Math.min(limit, matching), comments.size());
+
+    String sortBy = query.get("sortBy");
+    boolean descending = query.get("sort").equals("descending");
+    JsonObject previous = null;
+    for(int i = 0; i < comments.size(); i++) {
+      JsonObject comment = comments.get(i).getAsJsonObject();
+      if(!auth.isEmpty()) {
+        List<String> tokens = CommentAuthors.tokens(
+            comment.get("name").getAsString(), comment.get("author").getAsString());
+        Assert.assertTrue(query + " returned " + comment, tokens.contains(auth));
+      }
+      if(previous != null) {
+        int order = compare(previous, comment, sortBy);
+        Assert.assertTrue(query + " out of order at " + i, descending ? order >= 0 : order <= 0);
+      }
+      previous = comment;
+    }
+  }
+
+  private static int compare(JsonObject a, JsonObject b, String property) {
+    if(property.equals("author")) {
+      return a.get(property).getAsString().compareTo(b.get(property).getAsString());
+    }
+    return Long.compare(a.get(property).getAsLong(), b.get(property).getAsLong());
+  }
+
+  /** Runs a GET with the given parameters and returns the response body. */
+  private String get(Map<String, String> params) throws IOException {
+    HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(),
+        new Class<?>[] {HttpServletRequest.class},
+        (proxy, method, args) -> {
+          if(method.getName().equals("getParameter")) {
+            return params.get(args[0]);
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+    StringWriter body = new StringWriter();
+    PrintWriter writer = new PrintWriter(body);
+    HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+        HttpServletResponse.class.getClassLoader(),
+        new Class<?>[] {HttpServletResponse.class},
+        (proxy, method, args) -> {
+          switch(method.getName()) {
+            case "getWriter":
+              return writer;
+            case "setContentType":
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+    servlet.doGet(request, response);
+    writer.flush();
+    return body.toString();
+  }
+
+  private static UserService loggedOut() {
+    return (UserService) Proxy.newProxyInstance(
+        UserService.class.getClassLoader(),
+        new Class<?>[] {UserService.class},
+        (proxy, method, args) -> {
+          if(method.getName().equals("isUserLoggedIn")) {
+            return false;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
@@ -0,0 +1,152 @@
+package com.google.sps.servlets;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentStore;
+import com.google.sps.data.LanguageDetector;
+import com.google.sps.data.Stores;
+import com.google.sps.data.TranslationBackend;
+import com.google.sps.data.TranslationClient;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Background language detection against the local datastore and a stub translation backend. */
+@RunWith(JUnit4.class)
+public final class LanguageServletTest {
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(
+      new LocalDatastoreServiceTestConfig().setDefaultHighRepJobPolicyUnappliedJobPercentage(0));
+
+  private final LanguageServlet servlet = new LanguageServlet();
+  private final StubBackend backend = new StubBackend();
+  private CommentStore store;
+
+  @Before
+  public void setUp() {
+    helper.setUp();
+    Stores.useDatastore();
+    store = Stores.comments();
+    TranslationClient.getInstance().setBackend(backend);
+    CommentCache.getInstance().invalidateAll();
+  }
+
+  @After
+  public void tearDown() {
+    TranslationClient.getInstance().setBackend(null);
+    CommentCache.getInstance().invalidateAll();
+    Stores.useInMemory();
+    helper.tearDown();
+  }
+
+  @Test
+  public void fillsInPendingLanguage() throws IOException {
+    long id = store.add("Hola a todos", "author@example.com", "Author");
+    Assert.assertEquals(LanguageDetector.PENDING, store.get(id).getLanguage());
+    backend.language = "es";
+
+    AtomicInteger status = new AtomicInteger(HttpServletResponse.SC_OK);
+    servlet.doPost(request(id, "language-detection"), response(status));
+
+    Assert.assertEquals(HttpServletResponse.SC_OK, status.get());
+    Assert.assertEquals("es", store.get(id).getLanguage());
+    Assert.assertEquals(1, backend.detections.size());
+  }
+
+  @Test
+  public void rejectsRequestsOutsideTheQueue() throws IOException {
+    long id = store.add("Hello everyone", "author@example.com", "Author");
+
+    AtomicInteger status = new AtomicInteger(HttpServletResponse.SC_OK);
+    servlet.doPost(request(id, null), response(status));
+
+    Assert.assertEquals(HttpServletResponse.SC_FORBIDDEN, status.get());
+    Assert.assertEquals(LanguageDetector.PENDING, store.get(id).getLanguage());
+    Assert.assertTrue(backend.detections.isEmpty());
+  }
+
+  @Test
+  public void backendFailureLeavesCommentPending() throws IOException {
+    long id = store.add("Hello everyone", "author@example.com", "Author");
+    backend.failure = new RuntimeException("translate API unavailable");
+
+    try {
+      servlet.doPost(request(id, "language-detection"), response(new AtomicInteger()));
+      Assert.fail("expected the backend failure to fail the task so it is retried");
+    } catch (RuntimeException e) {
+      Assert.assertSame(backend.failure, e);
+    }
+    Assert.assertEquals(LanguageDetector.PENDING, store.get(id).getLanguage());
+  }
+
+  /** Detects every text as one fixed language, or throws a set failure. */
+  private static final class StubBackend implements TranslationBackend {
+    final List<String> detections = new ArrayList<>();
+    String language = "en";
+    RuntimeException failure;
+
+    @Override
+    public String translate(String text, String targetLanguage) {
+      throw new UnsupportedOperationException("translate");
+    }
+
+    @Override
+    public List<String> translate(List<String> texts, String targetLanguage) {
+      throw new UnsupportedOperationException("translate");
+    }
+
+    @Override
+    public String detect(String text) {
+      if(failure != null) {
+        throw failure;
+      }
+      detections.add(text);
+      return language;
+    }
+  }
+
+  /** A task queue POST for a comment id, with the queue header only if a queue is given. */
+  private static HttpServletRequest request(long id, String queueName) {
+    Map<String, String> params = new HashMap<>();
+    params.put("id", String.valueOf(id));
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(),
+        new Class<?>[] {HttpServletRequest.class},
+        (proxy, method, args) -> {
+          switch(method.getName()) {
+            case "getParameter":
+              return params.get(args[0]);
+            case "getHeader":
+              return "X-AppEngine-QueueName".equals(args[0]) ? queueName : null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  /** A response that records the status of any error sent. */
+  private static HttpServletResponse response(AtomicInteger status) {
+    return (HttpServletResponse) Proxy.newProxyInstance(
+        HttpServletResponse.class.getClassLoader(),
+        new Class<?>[] {HttpServletResponse.class},
+        (proxy, method, args) -> {
+          if(method.getName().equals("sendError")) {
+            status.set((Integer) args[0]);
+            return null;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.AttendeeIndex;
+import com.google.sps.Event;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code FindMeetingQuery.query} over random calendars of several sizes, for a meeting with two
+ * mandatory attendees and a varying number of optional ones, on each backend. Queries either read
+ * a prebuilt attendee index, as the servlet does, or start from the list of events. Run through
+ * {@link BenchmarkRunner} to see allocation per query next to the time.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindMeetingQueryBenchmark {
+
+  private static final int PEOPLE = 50;
+
+  @Param({"100", "1000", "10000"})
+  int events;
+
+  @Param({"0", "5", "25"})
+  int optional;
+
+  @Param({"SWEEP", "BITSET"})
+  FindMeetingQuery.Backend backend;
+
+  @Param({"index", "events"})
+  String source;
+
+  private List<Event> calendar;
+  private AttendeeIndex index;
+  private MeetingRequest request;
+  private FindMeetingQuery query;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(23);
+    calendar = new ArrayList<>(events);
+    for(int i = 0; i < events; i ++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.end() - 15);
+      int duration = 15 + random.nextInt(Math.min(105, TimeRange.WHOLE_DAY.end() - start - 15) + 1);
+      List<String> attendees = new ArrayList<>();
+      int count = 1 + random.nextInt(3);
+      for(int j = 0; j < count; j ++) {
+        attendees.add(person(random.nextInt(PEOPLE)));
+      }
+      TimeRange when = TimeRange.fromStartDuration(start, duration);
+      calendar.add(new Event("Event " + i, when, attendees));
+    }
+
+    request = new MeetingRequest(Arrays.asList(person(0), person(1)), 30);
+    for(int i = 0; i < optional; i ++) {
+      request.addOptionalAttendee(person(2 + i));
+    }
+    index = AttendeeIndex.of(calendar);
+    query = new FindMeetingQuery(backend);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> query() {
+    if(source.equals("index")) {
+      return query.query(index, request);
+    }
+    return query.query(calendar, request);
+  }
+
+  private static String person(int i) {
+    return "Person " + i;
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index from each attendee to the times they are busy, so a query reads only the events of
+ * the people it asks about instead of scanning every event. Build it once with {@link #of} and
+ * keep it up to date with {@link #add} and {@link #remove}. It is safe to share between threads:
+ * each attendee's busy times are an immutable snapshot that updates replace.
+ */
+public final class AttendeeIndex {
+
+  // each attendee's busy ranges as [start, end) pairs, sorted by start
+  private final Map<String, int[]> busy = new ConcurrentHashMap<>();
+
+  /** Creates an empty index. */
+  public AttendeeIndex() {}
+
+  /** Builds an index of a set of events, sorting each attendee's busy times once. */
+  public static AttendeeIndex of(Collection<Event> events) {
+    return of(events, null);
+  }
+
+  /**
+   * Builds an index of a set of events for only some of their attendees.
+   * @param attendees The attendees to index, or null for all of them.
+   */
+  static AttendeeIndex of(Collection<Event> events, Set<String> attendees) {
+    Map<String, Intervals> grouped = new HashMap<>();
+    for(Event e: events) {
+      TimeRange when = e.getWhen();
+      for(String attendee: e.getAttendees()) {
+        if(attendees != null && !attendees.contains(attendee)) {
+          continue;
+        }
+        Intervals ranges = grouped.get(attendee);
+        if(ranges == null) {
+          ranges = new Intervals(4);
+          grouped.put(attendee, ranges);
+        }
+        ranges.add(when.start(), when.end());
+      }
+    }
+    AttendeeIndex index = new AttendeeIndex();
+    for(Map.Entry<String, Intervals> entry: grouped.entrySet()) {
+      Intervals ranges = entry.getValue();
+      ranges.sortByStart(0, ranges.size());
+      index.busy.put(entry.getKey(), ranges.toArray());
+    }
+    return index;
+  }
+
+  /** Records an event as busy time for each of its attendees. */
+  public void add(Event event) {
+    TimeRange when = event.getWhen();
+    for(String attendee: event.getAttendees()) {
+      busy.compute(attendee, (name, ranges) -> insert(ranges, when.start(), when.end()));
+    }
+  }
+
+  /** Removes an event added before. Nothing changes for attendees it wasn't recorded for. */
+  public void remove(Event event) {
+    TimeRange when = event.getWhen();
+    for(String attendee: event.getAttendees()) {
+      busy.computeIfPresent(attendee, (name, ranges) -> delete(ranges, when.start(), when.end()));
+    }
+  }
+
+  /** Returns how many busy ranges are recorded for an attendee. */
+  public int busyCount(String attendee) {
+    int[] ranges = busy.get(attendee);
+    return (ranges == null) ? 0 : ranges.length / 2;
+  }
+
+  /**
+   * Appends an attendee's busy ranges, sorted by start, to a buffer.
+   * @return The number of ranges appended.
+   */
+  int appendBusy(String attendee, Intervals out) {
+    int[] ranges = busy.get(attendee);
+    if(ranges == null) {
+      return 0;
+    }
+    out.addAll(ranges);
+    return ranges.length / 2;
+  }
+
+  /** Returns a copy of {@code ranges} with [start, end) inserted in order. */
+  private static int[] insert(int[] ranges, int start, int end) {
+    if(ranges == null) {
+      return new int[] {start, end};
+    }
+    // insert after every range starting at or before this one
+    int at = 0;
+    while(at < ranges.length && ranges[at] <= start) {
+      at += 2;
+    }
+    int[] updated = new int[ranges.length + 2];
+    System.arraycopy(ranges, 0, updated, 0, at);
+    updated[at] = start;
+    updated[at + 1] = end;
+    System.arraycopy(ranges, at, updated, at + 2, ranges.length - at);
+    return updated;
+  }
+
+  /**
+   * Returns a copy of {@code ranges} without one occurrence of [start, end), {@code ranges}
+   * itself if it isn't there, or null if nothing is left.
+   */
+  private static int[] delete(int[] ranges, int start, int end) {
+    for(int at = 0; at < ranges.length; at += 2) {
+      if(ranges[at] == start && ranges[at + 1] == end) {
+        if(ranges.length == 2) {
+          return null;
+        }
+        int[] updated = new int[ranges.length - 2];
+        System.arraycopy(ranges, 0, updated, 0, at);
+        System.arraycopy(ranges, at + 2, updated, at, ranges.length - at - 2);
+        return updated;
+      }
+    }
+    return ranges;
+  }
+}
@@ -0,0 +1,56 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+/**
+ * Finds free time in a day from busy ranges packed in {@link Intervals}. Engines keep scratch
+ * buffers between calls and are not thread safe; use one per thread.
+ */
+interface AvailabilityEngine {
+
+  /**
+   * Finds the free ranges of the day around some busy ranges.
+   * @param busy      The buffer holding the busy ranges. They may overlap each other, and ranges
+   *                  with no duration block nothing. The ones used may be reordered.
+   * @param from      The index of the first busy range to use.
+   * @param to        The index after the last busy range to use.
+   * @param duration  The shortest free range worth keeping.
+   * @param out       Receives the free ranges at least {@code duration} long, sorted by start,
+   *                  replacing what it held.
+   */
+  void freeRanges(Intervals busy, int from, int to, int duration, Intervals out);
+
+  /**
+   * Finds the free ranges shared by the largest group of optional attendees that can meet
+   * inside the mandatory attendees' free ranges.
+   * @param mandatory Free ranges of the mandatory attendees, at least {@code duration} long and
+   *                  sorted by start.
+   * @param optional  The busy ranges of the optional attendees, one attendee after another. They
+   *                  may be reordered within each attendee.
+   * @param groupEnds For each optional attendee, the index after their last busy range.
+   * @param groups    The number of optional attendees.
+   * @param duration  The duration of the requested meeting.
+   * @param out       Receives the shared free ranges, sorted by start, replacing what it held.
+   *                  If no optional attendee can make any of the mandatory free ranges, those
+   *                  ranges themselves.
+   */
+  void mostAttended(
+      Intervals mandatory,
+      Intervals optional,
+      int[] groupEnds,
+      int groups,
+      int duration,
+      Intervals out);
+}
@@ -0,0 +1,221 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+
+/**
+ * Finds free time with one bit per minute of the day, so a whole day of busy time fits in 23
+ * longs. Busy ranges are ORed into a bitmap a word at a time, and free runs are found by jumping
+ * between set and clear bits with {@link Long#numberOfTrailingZeros}.
+ *
+ * <p>For optional attendees, each attendee's bitmap of possible meeting start times is added into
+ * a bit-sliced counter: plane {@code i} holds bit {@code i} of the count for every minute, so one
+ * word operation per plane adds a whole attendee. The highest count is then read off the planes
+ * from the top down. Scratch bitmaps are kept between calls; an engine is not thread safe.
+ */
+final class BitsetEngine implements AvailabilityEngine {
+
+  private static final int DAY = TimeRange.WHOLE_DAY.end();
+  private static final int WORDS = (DAY + Long.SIZE - 1) / Long.SIZE;
+
+  private final long[] busy = new long[WORDS];
+  private final long[] starts = new long[WORDS];
+  private final long[] shifted = new long[WORDS];
+  private final long[] mandatoryStarts = new long[WORDS];
+  // minutes where some attendee's possible starts begin or end
+  private final long[] changes = new long[WORDS];
+  private final long[] best = new long[WORDS];
+  private long[][] planes = new long[0][];
+
+  @Override
+  public void freeRanges(Intervals busyRanges, int from, int to, int duration, Intervals out) {
+    out.clear();
+    fillBusy(busyRanges, from, to);
+    for(int start = nextClear(busy, 0); start < DAY; ) {
+      int end = nextSet(busy, start);
+      if(end - start >= duration) {
+        out.add(start, end);
+      }
+      start = nextClear(busy, end);
+    }
+  }
+
+  @Override
+  public void mostAttended(
+      Intervals mandatory,
+      Intervals optional,
+      int[] groupEnds,
+      int groups,
+      int duration,
+      Intervals out)
+  {
+    // an empty meeting fits wherever a one minute meeting does, and the free ranges are the same
+    int length = Math.max(1, duration);
+    int planeCount = Integer.SIZE - Integer.numberOfLeadingZeros(groups);
+    if(planes.length < planeCount) {
+      planes = new long[planeCount][WORDS];
+    }
+    for(int p = 0; p < planeCount; p ++) {
+      Arrays.fill(planes[p], 0);
+    }
+    Arrays.fill(changes, 0);
+
+    // everything outside the mandatory free ranges is busy
+    Arrays.fill(busy, ~0L);
+    for(int i = 0; i < mandatory.size(); i ++) {
+      setRange(busy, mandatory.start(i), mandatory.end(i), false);
+    }
+    meetingStarts(length, mandatoryStarts);
+
+    int from = 0;
+    for(int g = 0; g < groups; g ++) {
+      fillBusy(optional, from, groupEnds[g]);
+      meetingStarts(length, starts);
+      // ripple-carry add this attendee's starts into the bit-sliced counter
+      for(int w = 0; w < WORDS; w ++) {
+        long carry = starts[w];
+        for(int p = 0; p < planeCount && carry != 0; p ++) {
+          long plane = planes[p][w];
+          planes[p][w] = plane ^ carry;
+          carry &= plane;
+        }
+        // a start time differs from the one before it where this attendee joins or leaves
+        long previous = (starts[w] << 1) | ((w > 0) ? (starts[w - 1] >>> 63) : 0);
+        changes[w] |= starts[w] ^ previous;
+      }
+      from = groupEnds[g];
+    }
+
+    // narrow the mandatory start times down to those with the highest count, top plane first
+    System.arraycopy(mandatoryStarts, 0, best, 0, WORDS);
+    int mostAttendees = 0;
+    for(int p = planeCount - 1; p >= 0; p --) {
+      boolean any = false;
+      for(int w = 0; w < WORDS; w ++) {
+        any |= (best[w] & planes[p][w]) != 0;
+      }
+      if(any) {
+        mostAttendees |= 1 << p;
+        for(int w = 0; w < WORDS; w ++) {
+          best[w] &= planes[p][w];
+        }
+      }
+    }
+
+    out.clear();
+    if(mostAttendees == 0) {
+      out.addAll(mandatory);
+      return;
+    }
+    // each run of best start times, split wherever the group of attendees changes, widened by
+    // the meeting length is one shared free range
+    for(int start = nextSet(best, 0); start < DAY; ) {
+      int runEnd = nextClear(best, start);
+      int pieceEnd = Math.min(runEnd, nextSet(changes, start + 1));
+      out.add(start, pieceEnd - 1 + length);
+      start = (pieceEnd < runEnd) ? pieceEnd : nextSet(best, runEnd);
+    }
+  }
+
+  /** Sets {@link #busy} to the busy ranges [from, to) of {@code ranges}. */
+  private void fillBusy(Intervals ranges, int from, int to) {
+    Arrays.fill(busy, 0);
+    for(int i = from; i < to; i ++) {
+      setRange(busy, ranges.start(i), ranges.end(i), true);
+    }
+    // minutes past the end of the day are never free
+    setRange(busy, DAY, WORDS * Long.SIZE, true);
+  }
+
+  /**
+   * Finds the minutes from which a meeting of {@code length} fits in the free time of
+   * {@link #busy}: a start is possible when it and the next {@code length - 1} minutes are free.
+   * The free bitmap is ANDed with itself shifted down by doubling steps, so this takes
+   * O(log length) passes over the words.
+   */
+  private void meetingStarts(int length, long[] out) {
+    for(int w = 0; w < WORDS; w ++) {
+      out[w] = ~busy[w];
+    }
+    // out covers windows of `covered` minutes at each step
+    for(int covered = 1; covered < length; ) {
+      int step = Math.min(covered, length - covered);
+      shiftDown(out, step, shifted);
+      for(int w = 0; w < WORDS; w ++) {
+        out[w] &= shifted[w];
+      }
+      covered += step;
+    }
+  }
+
+  /** Sets {@code out} so that bit {@code i} of it is bit {@code i + by} of {@code bits}. */
+  private static void shiftDown(long[] bits, int by, long[] out) {
+    int words = by / Long.SIZE;
+    int shift = by % Long.SIZE;
+    for(int w = 0; w < WORDS; w ++) {
+      long low = (w + words < WORDS) ? bits[w + words] : 0;
+      long high = (w + words + 1 < WORDS) ? bits[w + words + 1] : 0;
+      out[w] = (shift == 0) ? low : (low >>> shift) | (high << (Long.SIZE - shift));
+    }
+  }
+
+  /** Sets or clears the bits [from, to), clipped to the bitmap. */
+  private static void setRange(long[] bits, int from, int to, boolean value) {
+    from = Math.max(0, from);
+    to = Math.min(WORDS * Long.SIZE, to);
+    if(from >= to) {
+      return;
+    }
+    int first = from / Long.SIZE;
+    int last = (to - 1) / Long.SIZE;
+    for(int w = first; w <= last; w ++) {
+      long mask = ~0L;
+      if(w == first) {
+        mask &= ~0L << (from % Long.SIZE);
+      }
+      if(w == last) {
+        mask &= ~0L >>> (Long.SIZE - 1 - (to - 1) % Long.SIZE);
+      }
+      bits[w] = value ? (bits[w] | mask) : (bits[w] & ~mask);
+    }
+  }
+
+  /** Returns the first set bit at or after {@code from}, or {@link #DAY} if there is none. */
+  private static int nextSet(long[] bits, int from) {
+    return next(bits, from, 0);
+  }
+
+  /** Returns the first clear bit at or after {@code from}, or {@link #DAY} if there is none. */
+  private static int nextClear(long[] bits, int from) {
+    return next(bits, from, ~0L);
+  }
+
+  /** Finds the next bit that differs from {@code skip}, a word at a time. */
+  private static int next(long[] bits, int from, long skip) {
+    if(from >= DAY) {
+      return DAY;
+    }
+    int w = from / Long.SIZE;
+    long word = (bits[w] ^ skip) & (~0L << (from % Long.SIZE));
+    while(word == 0) {
+      if(++ w == WORDS) {
+        return DAY;
+      }
+      word = bits[w] ^ skip;
+    }
+    return Math.min(DAY, w * Long.SIZE + Long.numberOfTrailingZeros(word));
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of [start, end) ranges packed into one int array, so the scheduling engine can
+ * work on ranges without creating an object for each. Buffers are meant to be cleared and reused,
+ * and keep their capacity across uses.
+ */
+final class Intervals {
+  // start of range i at 2 * i, its exclusive end at 2 * i + 1
+  private int[] bounds;
+  private int size = 0;
+  // scratch keys for sorting, kept between sorts
+  private long[] keys = new long[0];
+
+  Intervals() {
+    this(16);
+  }
+
+  Intervals(int capacity) {
+    bounds = new int[2 * Math.max(1, capacity)];
+  }
+
+  /** Returns the number of ranges. */
+  int size() {
+    return size;
+  }
+
+  int start(int i) {
+    return bounds[2 * i];
+  }
+
+  int end(int i) {
+    return bounds[2 * i + 1];
+  }
+
+  /** Removes every range, keeping the capacity. */
+  void clear() {
+    size = 0;
+  }
+
+  /** Appends the range [start, end). */
+  void add(int start, int end) {
+    if(2 * size == bounds.length) {
+      bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+    }
+    bounds[2 * size] = start;
+    bounds[2 * size + 1] = end;
+    size ++;
+  }
+
+  /** Appends every range of {@code other}. */
+  void addAll(Intervals other) {
+    for(int i = 0; i < other.size; i ++) {
+      add(other.start(i), other.end(i));
+    }
+  }
+
+  /**
+   * Appends ranges packed as in {@link #toArray}.
+   * @param pairs Each range's start followed by its exclusive end.
+   */
+  void addAll(int[] pairs) {
+    int needed = 2 * size + pairs.length;
+    if(needed > bounds.length) {
+      bounds = Arrays.copyOf(bounds, Math.max(needed, 2 * bounds.length));
+    }
+    System.arraycopy(pairs, 0, bounds, 2 * size, pairs.length);
+    size += pairs.length / 2;
+  }
+
+  /** Returns a copy of the ranges, each as its start followed by its exclusive end. */
+  int[] toArray() {
+    return Arrays.copyOf(bounds, 2 * size);
+  }
+
+  /** Sorts the ranges with index {@code from} (inclusive) to {@code to} (exclusive) by start. */
+  void sortByStart(int from, int to) {
+    int count = to - from;
+    if(keys.length < count) {
+      keys = new long[Math.max(count, 2 * keys.length)];
+    }
+    // starts are never negative, so the packed keys order by start, then by end
+    for(int i = 0; i < count; i ++) {
+      keys[i] = ((long) start(from + i) << 32) | (end(from + i) & 0xFFFFFFFFL);
+    }
+    Arrays.sort(keys, 0, count);
+    for(int i = 0; i < count; i ++) {
+      bounds[2 * (from + i)] = (int) (keys[i] >>> 32);
+      bounds[2 * (from + i) + 1] = (int) keys[i];
+    }
+  }
+
+  /** Creates a TimeRange for each range, in order. */
+  List<TimeRange> toTimeRanges() {
+    List<TimeRange> ranges = new ArrayList<>(size);
+    for(int i = 0; i < size; i ++) {
+      ranges.add(TimeRange.fromStartEnd(start(i), end(i), false));
+    }
+    return ranges;
+  }
+}
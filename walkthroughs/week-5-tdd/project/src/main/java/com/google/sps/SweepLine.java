@@ -0,0 +1,151 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+
+/**
+ * Finds free time by sweeping over busy time once. Busy ranges are sorted by start, then merged
+ * and turned into free gaps in a single pass, so the cost is O(E log E) for E busy ranges.
+ *
+ * <p>The engine works on packed {@link Intervals} and keeps its scratch buffers between calls, so
+ * after warming up it allocates nothing per range. It is not thread safe; use one per thread.
+ */
+final class SweepLine implements AvailabilityEngine {
+
+  // kinds of start time boundaries
+  private static final int OPTIONAL_LEAVE = 0;
+  private static final int MANDATORY_LEAVE = 1;
+  private static final int OPTIONAL_JOIN = 2;
+  private static final int MANDATORY_JOIN = 3;
+  private static final int KIND_BITS = 2;
+  private static final long KIND_MASK = (1 << KIND_BITS) - 1;
+
+  private final Intervals gaps = new Intervals();
+  private long[] boundaries = new long[64];
+
+  @Override
+  public void freeRanges(Intervals busy, int from, int to, int duration, Intervals out) {
+    out.clear();
+    busy.sortByStart(from, to);
+    int freeFrom = TimeRange.WHOLE_DAY.start();
+    for(int i = from; i < to; i ++) {
+      if(busy.end(i) <= busy.start(i)) {
+        continue;
+      }
+      addIfLongEnough(out, freeFrom, busy.start(i), duration);
+      freeFrom = Math.max(freeFrom, busy.end(i));
+    }
+    addIfLongEnough(out, freeFrom, TimeRange.WHOLE_DAY.end(), duration);
+  }
+
+  /**
+   * Finds the slots that the most optional attendees can make, by counting over meeting start
+   * times. Each attendee's free gaps become intervals of start times from which a meeting of
+   * {@code duration} fits in the gap, and likewise for the mandatory free ranges. One sorted sweep
+   * over all interval boundaries then counts, for each elementary interval of start times, how
+   * many attendees can start a meeting there. Costs O(N log N) for N busy ranges in total.
+   *
+   * <p>Every elementary interval with the highest count belongs to a distinct group of attendees,
+   * since any change of group moves a boundary. Its start times, widened by {@code duration},
+   * are exactly the free range that group shares.
+   */
+  @Override
+  public void mostAttended(
+      Intervals mandatory,
+      Intervals optional,
+      int[] groupEnds,
+      int groups,
+      int duration,
+      Intervals out)
+  {
+    // an empty meeting fits wherever a one minute meeting does, and the free ranges are the same
+    int length = Math.max(1, duration);
+    int count = 0;
+    for(int i = 0; i < mandatory.size(); i ++) {
+      count = addStarts(count, mandatory.start(i), mandatory.end(i), length, MANDATORY_JOIN, 
+          MANDATORY_LEAVE);
+    }
+    int from = 0;
+    for(int g = 0; g < groups; g ++) {
+      freeRanges(optional, from, groupEnds[g], length, gaps);
+      for(int i = 0; i < gaps.size(); i ++) {
+        count = addStarts(count, gaps.start(i), gaps.end(i), length, OPTIONAL_JOIN, 
+            OPTIONAL_LEAVE);
+      }
+      from = groupEnds[g];
+    }
+    Arrays.sort(boundaries, 0, count);
+
+    out.clear();
+    int mostAttendees = 0;
+    boolean inMandatory = false;
+    int attendees = 0;
+    for(int i = 0; i < count; ) {
+      int start = position(boundaries[i]);
+      // apply every change at this start time before looking at the interval after it
+      for(; i < count && position(boundaries[i]) == start; i ++) {
+        int kind = (int) (boundaries[i] & KIND_MASK);
+        if(kind == MANDATORY_JOIN || kind == MANDATORY_LEAVE) {
+          inMandatory = (kind == MANDATORY_JOIN);
+        } else {
+          attendees += (kind == OPTIONAL_JOIN) ? 1 : -1;
+        }
+      }
+      if(!inMandatory || attendees == 0 || attendees < mostAttendees) {
+        continue;
+      }
+      if(attendees > mostAttendees) {
+        mostAttendees = attendees;
+        out.clear();
+      }
+      // the interval ends at the next boundary; the mandatory one at least is still to come
+      int end = position(boundaries[i]);
+      out.add(start, end - 1 + length);
+    }
+    if(mostAttendees == 0) {
+      out.addAll(mandatory);
+    }
+  }
+
+  /**
+   * Adds the boundaries of the start times of a meeting of {@code length} within the free range
+   * [start, end), which is at least that long.
+   * @return The new number of boundaries.
+   */
+  private int addStarts(int count, int start, int end, int length, int join, int leave) {
+    if(count + 2 > boundaries.length) {
+      boundaries = Arrays.copyOf(boundaries, 2 * boundaries.length);
+    }
+    boundaries[count] = boundary(start, join);
+    boundaries[count + 1] = boundary(end - length + 1, leave);
+    return count + 2;
+  }
+
+  /** Packs a boundary into a long so boundaries sort by position. */
+  private static long boundary(int position, int kind) {
+    return ((long) position << KIND_BITS) | kind;
+  }
+
+  private static int position(long boundary) {
+    return (int) (boundary >>> KIND_BITS);
+  }
+
+  private static void addIfLongEnough(Intervals out, int start, int end, int duration) {
+    if(end > start && end - start >= duration) {
+      out.add(start, end);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeIndexTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final Event LATE = new Event("Late", TimeRange.fromStartDuration(600, 60),
+      Arrays.asList(PERSON_A, PERSON_B));
+  private static final Event EARLY = new Event("Early", TimeRange.fromStartDuration(60, 30),
+      Arrays.asList(PERSON_A));
+
+  @Test
+  public void groupsBusyTimeByAttendeeInOrder() {
+    AttendeeIndex index = AttendeeIndex.of(Arrays.asList(LATE, EARLY));
+
+    Assert.assertEquals(Arrays.asList(EARLY.getWhen(), LATE.getWhen()), busy(index, PERSON_A));
+    Assert.assertEquals(Arrays.asList(LATE.getWhen()), busy(index, PERSON_B));
+    Assert.assertEquals(0, index.busyCount("Nobody"));
+  }
+
+  @Test
+  public void addKeepsBusyTimeInOrder() {
+    AttendeeIndex index = new AttendeeIndex();
+    index.add(LATE);
+    index.add(EARLY);
+
+    Assert.assertEquals(Arrays.asList(EARLY.getWhen(), LATE.getWhen()), busy(index, PERSON_A));
+    Assert.assertEquals(1, index.busyCount(PERSON_B));
+  }
+
+  @Test
+  public void removeDropsOnlyThatEvent() {
+    AttendeeIndex index = AttendeeIndex.of(Arrays.asList(LATE, EARLY));
+    index.remove(LATE);
+
+    Assert.assertEquals(Arrays.asList(EARLY.getWhen()), busy(index, PERSON_A));
+    Assert.assertEquals(0, index.busyCount(PERSON_B));
+
+    // removing it again changes nothing
+    index.remove(LATE);
+    Assert.assertEquals(1, index.busyCount(PERSON_A));
+  }
+
+  @Test
+  public void incrementalIndexAnswersLikeEventList() {
+    Random random = new Random(25);
+    List<Event> events = new ArrayList<>();
+    AttendeeIndex index = new AttendeeIndex();
+    for(int i = 0; i < 200; i ++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.end() - 60);
+      TimeRange when = TimeRange.fromStartDuration(start, 1 + random.nextInt(60));
+      Event event = new Event("Event " + i, when,
+          Arrays.asList("Person " + random.nextInt(10), "Person " + random.nextInt(10)));
+      events.add(event);
+      index.add(event);
+    }
+    // drop a few again, from both
+    for(int i = 0; i < 20; i ++) {
+      index.remove(events.remove(random.nextInt(events.size())));
+    }
+
+    FindMeetingQuery query = new FindMeetingQuery();
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Person 0"), 30);
+    for(int i = 1; i < 6; i ++) {
+      request.addOptionalAttendee("Person " + i);
+    }
+    Assert.assertEquals(query.query(events, request), query.query(index, request));
+  }
+
+  private static List<TimeRange> busy(AttendeeIndex index, String attendee) {
+    Intervals ranges = new Intervals();
+    index.appendBusy(attendee, ranges);
+    return ranges.toTimeRanges();
+  }
+}
@@ -0,0 +1,138 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class BitsetEngineTest {
+  @Test
+  public void freeRunsAcrossWordBoundaries() {
+    // busy minutes 60 to 70 and 130 to 200 straddle the first and second 64-bit words
+    Intervals busy = new Intervals();
+    busy.add(130, 200);
+    busy.add(60, 70);
+    Intervals free = new Intervals();
+    new BitsetEngine().freeRanges(busy, 0, busy.size(), 60, free);
+
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(0, 60, false),
+        TimeRange.fromStartEnd(70, 130, false),
+        TimeRange.fromStartEnd(200, TimeRange.END_OF_DAY, true));
+    Assert.assertEquals(expected, free.toTimeRanges());
+  }
+
+  @Test
+  public void longMeetingNeedsWholeRun() {
+    // a 200 minute meeting only fits in the free time after 1000
+    Intervals mandatory = new Intervals();
+    mandatory.add(0, 199);
+    mandatory.add(1000, TimeRange.WHOLE_DAY.end());
+    Intervals optional = new Intervals();
+    optional.add(1100, 1110);
+    Intervals shared = new Intervals();
+    new BitsetEngine().mostAttended(mandatory, optional, new int[] {1}, 1, 200, shared);
+
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(1110, TimeRange.END_OF_DAY, true));
+    Assert.assertEquals(expected, shared.toTimeRanges());
+  }
+
+  @Test
+  public void matchesSweepLine() {
+    Random random = new Random(24);
+    SweepLine sweep = new SweepLine();
+    BitsetEngine bitset = new BitsetEngine();
+    for(int round = 0; round < 2000; round ++) {
+      int duration = random.nextInt(150);
+      Intervals mandatoryBusy = randomBusy(random, random.nextInt(10));
+      Intervals optional = new Intervals();
+      int groups = random.nextInt(12);
+      int[] groupEnds = new int[groups];
+      for(int g = 0; g < groups; g ++) {
+        optional.addAll(randomBusy(random, 1 + random.nextInt(6)));
+        groupEnds[g] = optional.size();
+      }
+
+      Intervals sweepFree = new Intervals();
+      Intervals bitsetFree = new Intervals();
+      sweep.freeRanges(mandatoryBusy, 0, mandatoryBusy.size(), duration, sweepFree);
+      bitset.freeRanges(mandatoryBusy, 0, mandatoryBusy.size(), duration, bitsetFree);
+      Assert.assertEquals(sweepFree.toTimeRanges(), bitsetFree.toTimeRanges());
+
+      Intervals sweepShared = new Intervals();
+      Intervals bitsetShared = new Intervals();
+      sweep.mostAttended(sweepFree, optional, groupEnds, groups, duration, sweepShared);
+      bitset.mostAttended(sweepFree, optional, groupEnds, groups, duration, bitsetShared);
+      Assert.assertEquals(
+          "round " + round, sweepShared.toTimeRanges(), bitsetShared.toTimeRanges());
+    }
+  }
+
+  @Test
+  public void queryMatchesSubsetSearch() {
+    SubsetSearchMeetingQuery reference = new SubsetSearchMeetingQuery();
+    FindMeetingQuery query = new FindMeetingQuery(FindMeetingQuery.Backend.BITSET);
+    Random random = new Random(2024);
+    List<String> people = new ArrayList<>();
+    for(int i = 0; i < 8; i ++) {
+      people.add("Person " + i);
+    }
+    for(int round = 0; round < 1000; round ++) {
+      List<Event> events = new ArrayList<>();
+      int eventCount = random.nextInt(16);
+      for(int i = 0; i < eventCount; i ++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.end() - 1);
+        int length = 1 + random.nextInt(Math.min(240, TimeRange.WHOLE_DAY.end() - start));
+        Collections.shuffle(people, random);
+        events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, length),
+            new ArrayList<>(people.subList(0, 1 + random.nextInt(3)))));
+      }
+
+      Collections.shuffle(people, random);
+      int mandatoryCount = random.nextInt(3);
+      MeetingRequest request = new MeetingRequest(
+          people.subList(0, mandatoryCount), 1 + random.nextInt(120));
+      for(String person: people.subList(mandatoryCount, mandatoryCount + random.nextInt(6))) {
+        request.addOptionalAttendee(person);
+      }
+
+      Assert.assertEquals(
+          "round " + round,
+          new ArrayList<>(reference.query(events, request)),
+          new ArrayList<>(query.query(events, request)));
+    }
+  }
+
+  /** Makes up to {@code count} busy ranges, some of them empty or overlapping. */
+  private static Intervals randomBusy(Random random, int count) {
+    Intervals busy = new Intervals();
+    for(int i = 0; i < count; i ++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.end());
+      int length = random.nextInt(Math.min(300, TimeRange.WHOLE_DAY.end() - start) + 1);
+      busy.add(start, start + length);
+    }
+    return busy;
+  }
+}
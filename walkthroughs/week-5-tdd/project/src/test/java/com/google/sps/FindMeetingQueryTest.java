@@ -19,6 +19,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -514,5 +515,66 @@ public final class FindMeetingQueryTest {
         TimeRange.fromStartEnd(TIME_1000AM, TIME_1100AM, false));
     Assert.assertEquals(expected, actual);
   }
-}
 
+  @Test
+  public void manyOptionalAttendees() {
+    // 25 optional attendees, each busy for a different half hour until 12:30, with person 0
+    // also busy from then on. Only the time after 12:30 suits all but one of them.
+    // Events  : |-0-|-1-|-2-| ... |-24-|
+    //                                  |--------0--------|
+    // Day     : |----------------------------------------|
+    // Options :                        |-----------------|
+    int afternoon = TimeRange.getTimeInMinutes(12, 30);
+    List<Event> events = new ArrayList<>();
+    MeetingRequest request = new MeetingRequest(NO_ATTENDEES, DURATION_60_MINUTES);
+    for(int i = 0; i < 25; i ++) {
+      String person = "Person " + i;
+      events.add(new Event("Busy " + i, TimeRange.fromStartDuration(i * 30, 30),
+          Arrays.asList(person)));
+      request.addOptionalAttendee(person);
+    }
+    events.add(new Event("Afternoon", TimeRange.fromStartEnd(afternoon, TimeRange.END_OF_DAY, true),
+        Arrays.asList("Person 0")));
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(25 * 30, TimeRange.END_OF_DAY, true));
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void matchesSubsetSearchOnRandomCalendars() {
+    SubsetSearchMeetingQuery reference = new SubsetSearchMeetingQuery();
+    Random random = new Random(22);
+    for(int round = 0; round < 2000; round ++) {
+      List<String> people = new ArrayList<>();
+      for(int i = 0; i < 8; i ++) {
+        people.add("Person " + i);
+      }
+      Collections.shuffle(people, random);
+
+      List<Event> events = new ArrayList<>();
+      int eventCount = random.nextInt(16);
+      for(int i = 0; i < eventCount; i ++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.end() - 1);
+        int length = 1 + random.nextInt(Math.min(240, TimeRange.WHOLE_DAY.end() - start));
+        List<String> eventAttendees = people.subList(0, 1 + random.nextInt(3));
+        events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, length),
+            new ArrayList<>(eventAttendees)));
+        Collections.shuffle(people, random);
+      }
+
+      int mandatoryCount = random.nextInt(3);
+      MeetingRequest request = new MeetingRequest(
+          people.subList(0, mandatoryCount), 1 + random.nextInt(120));
+      for(String person: people.subList(mandatoryCount, mandatoryCount + random.nextInt(6))) {
+        request.addOptionalAttendee(person);
+      }
+
+      Assert.assertEquals(
+          "events " + events.size() + " in round " + round,
+          new ArrayList<>(reference.query(events, request)),
+          new ArrayList<>(query.query(events, request)));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class IntervalsTest {
+  @Test
+  public void growsPastItsCapacity() {
+    Intervals intervals = new Intervals(1);
+    for(int i = 0; i < 100; i ++) {
+      intervals.add(i, i + 1);
+    }
+
+    Assert.assertEquals(100, intervals.size());
+    Assert.assertEquals(99, intervals.start(99));
+    Assert.assertEquals(100, intervals.end(99));
+  }
+
+  @Test
+  public void clearKeepsNothing() {
+    Intervals intervals = new Intervals();
+    intervals.add(0, 10);
+    intervals.clear();
+
+    Assert.assertEquals(0, intervals.size());
+    Assert.assertTrue(intervals.toTimeRanges().isEmpty());
+  }
+
+  @Test
+  public void sortsPartByStartThenEnd() {
+    Intervals intervals = new Intervals();
+    intervals.add(500, 600);
+    intervals.add(300, 400);
+    intervals.add(100, 300);
+    intervals.add(100, 200);
+    intervals.add(0, 50);
+    intervals.sortByStart(1, 4);
+
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(500, 600, false),
+        TimeRange.fromStartEnd(100, 200, false),
+        TimeRange.fromStartEnd(100, 300, false),
+        TimeRange.fromStartEnd(300, 400, false),
+        TimeRange.fromStartEnd(0, 50, false));
+    Assert.assertEquals(expected, intervals.toTimeRanges());
+  }
+}
@@ -0,0 +1,166 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class SweepLineTest {
+  private static final List<TimeRange> WHOLE_DAY = Arrays.asList(TimeRange.WHOLE_DAY);
+  private static final List<TimeRange> NO_BUSY = Collections.emptyList();
+
+  @Test
+  public void nothingBusy() {
+    Assert.assertEquals(WHOLE_DAY, freeRanges(NO_BUSY, 30));
+  }
+
+  @Test
+  public void mergesOverlappingAndTouchingRanges() {
+    // Busy : |--|  |---|
+    //             |--|  |--|
+    // Free :    |-|          |---...
+    List<TimeRange> busy = Arrays.asList(
+        TimeRange.fromStartEnd(300, 400, false),
+        TimeRange.fromStartEnd(100, 200, false),
+        TimeRange.fromStartEnd(250, 320, false),
+        TimeRange.fromStartEnd(400, 450, false));
+
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(0, 100, false),
+        TimeRange.fromStartEnd(200, 250, false),
+        TimeRange.fromStartEnd(450, TimeRange.END_OF_DAY, true));
+    Assert.assertEquals(expected, freeRanges(busy, 1));
+  }
+
+  @Test
+  public void emptyRangesBlockNothing() {
+    List<TimeRange> busy = Arrays.asList(TimeRange.fromStartDuration(600, 0));
+    Assert.assertEquals(WHOLE_DAY, freeRanges(busy, 30));
+  }
+
+  @Test
+  public void dropsGapsThatAreTooShort() {
+    // Busy : |--|   |--|
+    // Free :     |-|    |------|
+    List<TimeRange> busy = Arrays.asList(
+        TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 100, false),
+        TimeRange.fromStartEnd(120, 200, false));
+
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(200, TimeRange.END_OF_DAY, true));
+    Assert.assertEquals(expected, freeRanges(busy, 30));
+  }
+
+  @Test
+  public void usesOnlyTheGivenBusyRanges() {
+    // Busy : |--|  |--|  |--|
+    // Used :       |--|
+    Intervals busy = new Intervals();
+    busy.add(0, 100);
+    busy.add(200, 300);
+    busy.add(400, 500);
+    Intervals free = new Intervals();
+    new SweepLine().freeRanges(busy, 1, 2, 1, free);
+
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(0, 200, false),
+        TimeRange.fromStartEnd(300, TimeRange.END_OF_DAY, true));
+    Assert.assertEquals(expected, free.toTimeRanges());
+  }
+
+  @Test
+  public void matchesMinuteByMinuteCheck() {
+    Random random = new Random(21);
+    for(int round = 0; round < 500; round ++) {
+      List<TimeRange> busy = new ArrayList<>();
+      int count = random.nextInt(30);
+      for(int i = 0; i < count; i ++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.end());
+        int length = random.nextInt(Math.min(180, TimeRange.WHOLE_DAY.end() - start) + 1);
+        busy.add(TimeRange.fromStartDuration(start, length));
+      }
+      long duration = 1 + random.nextInt(90);
+
+      Assert.assertEquals(
+          "busy " + busy + ", duration " + duration,
+          freeMinuteByMinute(busy, duration),
+          freeRanges(busy, (int) duration));
+    }
+  }
+
+  @Test
+  public void thousandsOfEvents() {
+    // a busy calendar leaving the last half hour of every other hour free
+    List<TimeRange> busy = new ArrayList<>();
+    List<TimeRange> expected = new ArrayList<>();
+    for(int hour = 0; hour < 24; hour ++) {
+      int end = (hour % 2 == 0) ? (hour * 60 + 30) : (hour * 60 + 60);
+      for(int start = hour * 60; start < end; start ++) {
+        busy.add(TimeRange.fromStartDuration(start, Math.min(5, end - start)));
+      }
+      if(hour % 2 == 0) {
+        expected.add(TimeRange.fromStartDuration(hour * 60 + 30, 30));
+      }
+    }
+    Collections.shuffle(busy, new Random(7));
+
+    Assert.assertTrue(busy.size() > 1000);
+    Assert.assertEquals(expected, freeRanges(busy, 30));
+  }
+
+  /** Finds the free ranges of the day with the engine. */
+  private static List<TimeRange> freeRanges(List<TimeRange> busy, int duration) {
+    Intervals packed = new Intervals();
+    for(TimeRange range: busy) {
+      packed.add(range.start(), range.end());
+    }
+    Intervals free = new Intervals();
+    new SweepLine().freeRanges(packed, 0, packed.size(), duration, free);
+    return free.toTimeRanges();
+  }
+
+  /** Finds the free ranges of the day by marking each busy minute. */
+  private static List<TimeRange> freeMinuteByMinute(List<TimeRange> busy, long duration) {
+    boolean[] taken = new boolean[TimeRange.WHOLE_DAY.end()];
+    for(TimeRange range: busy) {
+      for(int minute = range.start(); minute < range.end(); minute ++) {
+        taken[minute] = true;
+      }
+    }
+    List<TimeRange> free = new ArrayList<>();
+    int start = -1;
+    for(int minute = 0; minute <= taken.length; minute ++) {
+      boolean isFree = minute < taken.length && !taken[minute];
+      if(isFree && start < 0) {
+        start = minute;
+      } else if(!isFree && start >= 0) {
+        if(minute - start >= duration) {
+          free.add(TimeRange.fromStartEnd(start, minute, false));
+        }
+        start = -1;
+      }
+    }
+    return free;
+  }
+}